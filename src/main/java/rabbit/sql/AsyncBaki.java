@@ -0,0 +1,138 @@
+package rabbit.sql;
+
+import rabbit.common.types.DataRow;
+import rabbit.sql.support.ICondition;
+import rabbit.sql.types.DataFrame;
+import rabbit.sql.types.Param;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 异步dao接口，与{@link Baki}一一对应，所有操作在线程池中执行并返回{@link CompletableFuture}<br>
+ * 查询结果在工作线程中收集为{@link List}，不会将占用连接的流交给调用线程
+ *
+ * @see Baki
+ */
+public interface AsyncBaki {
+
+    /**
+     * 执行一条原始sql
+     *
+     * @param sql 原始sql
+     * @return 如果执行成功，DML语句返回1，DDL语句返回0
+     */
+    CompletableFuture<DataRow> execute(String sql);
+
+    /**
+     * 执行一条原始sql
+     *
+     * @param sql  原始sql
+     * @param args 参数
+     * @return 如果执行成功，DML语句返回1，DDL语句返回0
+     */
+    CompletableFuture<DataRow> execute(String sql, Map<String, Object> args);
+
+    /**
+     * 插入
+     *
+     * @param dataFrame 数据
+     * @return 受影响的行数
+     */
+    CompletableFuture<Integer> insert(DataFrame dataFrame);
+
+    /**
+     * 删除
+     *
+     * @param tableName  表名
+     * @param ICondition 条件
+     * @return 受影响的行数
+     */
+    CompletableFuture<Integer> delete(String tableName, ICondition ICondition);
+
+    /**
+     * 更新
+     *
+     * @param tableName  表名
+     * @param data       数据
+     * @param ICondition 条件
+     * @return 受影响的行数
+     */
+    CompletableFuture<Integer> update(String tableName, Map<String, Object> data, ICondition ICondition);
+
+    /**
+     * 查询
+     *
+     * @param sql 查询sql
+     * @return 结果集
+     */
+    CompletableFuture<List<DataRow>> query(String sql);
+
+    /**
+     * 查询
+     *
+     * @param sql  查询sql
+     * @param args 参数
+     * @return 结果集
+     */
+    CompletableFuture<List<DataRow>> query(String sql, Map<String, Object> args);
+
+    /**
+     * 获取一条
+     *
+     * @param sql 查询sql
+     * @return 空或一条
+     */
+    CompletableFuture<Optional<DataRow>> fetch(String sql);
+
+    /**
+     * 获取一条
+     *
+     * @param sql  查询sql
+     * @param args 参数
+     * @return 空或一条
+     */
+    CompletableFuture<Optional<DataRow>> fetch(String sql, Map<String, Object> args);
+
+    /**
+     * 判断是否存在数据行
+     *
+     * @param sql 查询sql
+     * @return 是否存在
+     */
+    CompletableFuture<Boolean> exists(String sql);
+
+    /**
+     * 判断是否存在数据行
+     *
+     * @param sql  查询sql
+     * @param args 参数
+     * @return 是否存在
+     */
+    CompletableFuture<Boolean> exists(String sql, Map<String, Object> args);
+
+    /**
+     * 执行存储过程或函数
+     *
+     * @param name 过程名
+     * @param args 参数 （占位符名字，参数对象）
+     * @return 一个或多个结果或无结果
+     */
+    CompletableFuture<DataRow> call(String name, Map<String, Param> args);
+
+    /**
+     * 在线程池中执行任意的同步操作，例如一个完整的事务：
+     * <blockquote>
+     * <pre>asyncBaki.submit(baki -&gt; Tx.using(() -&gt; baki.insert(...)))</pre>
+     * </blockquote>
+     * 函数返回的结果中不应包含未关闭的流
+     *
+     * @param action 同步操作
+     * @param <T>    类型参数
+     * @return 操作结果
+     */
+    <T> CompletableFuture<T> submit(Function<Baki, T> action);
+}
@@ -1,15 +1,21 @@
 package rabbit.sql;
 
+import org.reactivestreams.Publisher;
 import rabbit.common.types.DataRow;
 import rabbit.sql.page.IPageable;
 import rabbit.sql.support.ICondition;
+import rabbit.sql.support.ScriptResult;
 import rabbit.sql.types.DataFrame;
 import rabbit.sql.types.Param;
 
+import java.nio.file.Path;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -42,6 +48,33 @@ public interface Baki {
      */
     int insert(DataFrame dataFrame);
 
+    /**
+     * 插入并返回数据库生成的键
+     *
+     * @param dataFrame  数据
+     * @param keyColumns 生成键的列名，为空则由驱动决定返回的列
+     * @return 每行数据生成的键，顺序与数据的顺序一致
+     */
+    List<DataRow> insertReturningKeys(DataFrame dataFrame, String... keyColumns);
+
+    /**
+     * 插入并返回数据库生成的数字主键
+     *
+     * @param dataFrame 数据
+     * @param keyColumn 主键列名，为null则由驱动决定返回的列
+     * @return 每行数据生成的主键，顺序与数据的顺序一致
+     */
+    long[] insertReturningIds(DataFrame dataFrame, String keyColumn);
+
+    /**
+     * 批量合并（upsert），存在冲突的行更新，否则插入
+     *
+     * @param dataFrame    数据
+     * @param conflictKeys 冲突判断的字段（主键或唯一索引字段）
+     * @return 受影响的行数
+     */
+    int upsert(DataFrame dataFrame, String... conflictKeys);
+
     /**
      * 删除
      *
@@ -78,6 +111,39 @@ public interface Baki {
      */
     Stream<DataRow> query(String sql, Map<String, Object> args);
 
+    /**
+     * 流式查询<br>
+     * 结果集以游标方式每次只抓取指定的行数，用于导出等超大结果集的场景
+     *
+     * @param sql       查询sql
+     * @param args      参数
+     * @param fetchSize 每次抓取行数
+     * @return 收集为流的结果集
+     */
+    Stream<DataRow> query(String sql, Map<String, Object> args, int fetchSize);
+
+    /**
+     * 分区并行查询<br>
+     * 按分区列的值范围将查询拆分为多个分区，每个分区使用独立的连接，配合{@link Stream#parallel()}并行读取
+     *
+     * @param sql        查询sql
+     * @param args       参数
+     * @param column     分区列（数字或时间类型）
+     * @param partitions 分区数
+     * @return 收集为流的结果集
+     */
+    Stream<DataRow> queryParallel(String sql, Map<String, Object> args, String column, int partitions);
+
+    /**
+     * 以支持背压的发布者查询<br>
+     * 按订阅者请求的数量读取并发送，完成，出错或取消时释放连接
+     *
+     * @param sql  查询sql
+     * @param args 参数
+     * @return 查询结果发布者
+     */
+    Publisher<DataRow> queryPublisher(String sql, Map<String, Object> args);
+
     /**
      * 分页查询
      *
@@ -132,6 +198,44 @@ public interface Baki {
      */
     DataRow call(String name, Map<String, Param> args);
 
+    /**
+     * 执行存储过程或函数，游标类型的出参以惰性流的方式返回，所有游标流关闭后才释放连接
+     *
+     * @param name      过程名
+     * @param args      参数 （占位符名字，参数对象）
+     * @param fetchSize 游标每次抓取行数
+     * @return 一个或多个结果或无结果，游标结果类型为{@link java.util.stream.Stream}&lt;{@link DataRow}&gt;
+     */
+    DataRow call(String name, Map<String, Param> args, int fetchSize);
+
+    /**
+     * 批量调用只有入参的存储过程
+     *
+     * @param name 过程名
+     * @param args 多组参数 （占位符名字，参数对象）
+     * @return 总的受影响的行数
+     */
+    int callBatch(String name, Collection<Map<String, Param>> args);
+
+    /**
+     * 流式执行sql脚本文件（UTF-8），语句批量执行并定期提交
+     *
+     * @param path       脚本文件路径
+     * @param commitSize 提交间隔（语句数）
+     * @return 执行结果统计
+     */
+    ScriptResult executeScript(Path path, int commitSize);
+
+    /**
+     * 在指定的时间内执行操作，操作中的每条语句的超时时间为剩余的时间，到期后的语句将不再执行
+     *
+     * @param seconds 时间（秒）
+     * @param action  操作
+     * @param <T>     类型参数
+     * @return 操作结果
+     */
+    <T> T withTimeout(int seconds, Supplier<T> action);
+
     /**
      * 获取数据库的元数据信息
      *
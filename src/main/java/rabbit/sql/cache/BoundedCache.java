@@ -0,0 +1,250 @@
+package rabbit.sql.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 线程安全的有界缓存，超出容量时按照淘汰策略移除条目，并记录命中统计信息<br>
+ * 基于{@link ConcurrentHashMap}实现，读取不加锁；每个条目记录访问（LRU）或写入（FIFO）的时间，
+ * 写入后超出容量时才在淘汰锁中按时间淘汰最早的条目，为分摊排序的开销一次淘汰约1/8的条目，所以LRU为近似实现<br>
+ * 容量为0时表示禁用缓存，所有的请求都不会被缓存<br>
+ * 可以指定移除监听器，在条目被淘汰或清空时释放值所持有的资源
+ *
+ * @param <K> 键类型参数
+ * @param <V> 值类型参数
+ */
+public final class BoundedCache<K, V> {
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final StatsCounter counter;
+    private final BiConsumer<? super K, ? super V> removalListener;
+    private final int maxSize;
+    private final Eviction eviction;
+    private final ConcurrentHashMap<K, Node<V>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param maxSize  最大条目数
+     * @param eviction 淘汰策略
+     */
+    public BoundedCache(int maxSize, Eviction eviction) {
+        this(maxSize, eviction, new StatsCounter(), null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param maxSize         最大条目数
+     * @param eviction        淘汰策略
+     * @param counter         统计计数器，多个缓存可以共享同一个计数器
+     * @param removalListener 条目被淘汰或清空时的监听器，可以为null
+     */
+    public BoundedCache(int maxSize, Eviction eviction, StatsCounter counter, BiConsumer<? super K, ? super V> removalListener) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("cache max size must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.eviction = eviction;
+        this.counter = counter;
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * 获取缓存的值
+     *
+     * @param key 键
+     * @return 值，不存在则为null
+     */
+    public V get(K key) {
+        Node<V> node = cache.get(key);
+        if (node == null) {
+            counter.recordMiss();
+            return null;
+        }
+        if (eviction == Eviction.LRU) {
+            node.stamp = System.nanoTime();
+        }
+        counter.recordHit();
+        return node.value;
+    }
+
+    /**
+     * 获取缓存的值，如果不存在，则通过加载函数计算并放入缓存<br>
+     * 加载函数不在锁中执行，并发情况下可能会被执行多次，但最终只有一个结果被缓存
+     *
+     * @param key    键
+     * @param loader 加载函数
+     * @return 值
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        V newValue = loader.apply(key);
+        if (newValue == null || maxSize == 0) {
+            return newValue;
+        }
+        Node<V> existing = cache.putIfAbsent(key, new Node<>(newValue));
+        if (existing != null) {
+            return existing.value;
+        }
+        evictIfNeeded();
+        return newValue;
+    }
+
+    /**
+     * 放入缓存
+     *
+     * @param key   键
+     * @param value 值
+     */
+    public void put(K key, V value) {
+        if (maxSize == 0) {
+            return;
+        }
+        cache.put(key, new Node<>(value));
+        evictIfNeeded();
+    }
+
+    /**
+     * 如果不存在，则放入缓存
+     *
+     * @param key   键
+     * @param value 值
+     * @return 已存在的值，不存在（已放入）或禁用缓存时为null
+     */
+    public V putIfAbsent(K key, V value) {
+        if (maxSize == 0) {
+            return null;
+        }
+        Node<V> existing = cache.putIfAbsent(key, new Node<>(value));
+        if (existing != null) {
+            return existing.value;
+        }
+        evictIfNeeded();
+        return null;
+    }
+
+    /**
+     * 取出并移除缓存的值，并记录命中统计，用于同一时刻只能被一个使用者持有的值
+     *
+     * @param key 键
+     * @return 值，不存在则为null
+     */
+    public V take(K key) {
+        Node<V> node = cache.remove(key);
+        if (node == null) {
+            counter.recordMiss();
+            return null;
+        }
+        counter.recordHit();
+        return node.value;
+    }
+
+    /**
+     * 移除缓存
+     *
+     * @param key 键
+     * @return 被移除的值，不存在则为null
+     */
+    public V remove(K key) {
+        Node<V> node = cache.remove(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * 清空缓存，每个被清除的条目都会通知移除监听器
+     */
+    public void clear() {
+        for (Map.Entry<K, Node<V>> e : cache.entrySet()) {
+            // 条件移除，并发取出（take）的条目不会通知监听器
+            if (cache.remove(e.getKey(), e.getValue()) && removalListener != null) {
+                removalListener.accept(e.getKey(), e.getValue().value);
+            }
+        }
+    }
+
+    /**
+     * 超出容量时淘汰访问（写入）时间最早的条目，只有写操作会进入淘汰锁
+     */
+    private void evictIfNeeded() {
+        if (cache.size() <= maxSize) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            int size = cache.size();
+            if (size <= maxSize) {
+                return;
+            }
+            List<Map.Entry<K, Node<V>>> entries = new ArrayList<>(cache.entrySet());
+            entries.sort((a, b) -> Long.compare(a.getValue().stamp, b.getValue().stamp));
+            int count = Math.min(size - maxSize + (maxSize >> 3), entries.size());
+            for (int i = 0; i < count; i++) {
+                Map.Entry<K, Node<V>> e = entries.get(i);
+                if (cache.remove(e.getKey(), e.getValue())) {
+                    counter.recordEviction();
+                    if (removalListener != null) {
+                        removalListener.accept(e.getKey(), e.getValue().value);
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 获取当前缓存条目数
+     *
+     * @return 条目数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 获取缓存容量
+     *
+     * @return 容量
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 获取淘汰策略
+     *
+     * @return 淘汰策略
+     */
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return 统计信息快照
+     */
+    public CacheStats stats() {
+        return counter.snapshot(size(), maxSize);
+    }
+
+    /**
+     * 缓存条目，记录访问（LRU）或写入（FIFO）的时间
+     */
+    private static final class Node<V> {
+        private final V value;
+        private volatile long stamp = System.nanoTime();
+
+        Node(V value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package rabbit.sql.cache;
+
+/**
+ * 缓存统计信息快照
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+    private final int maxSize;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, int size, int maxSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 获取未命中次数
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 获取被淘汰的条目数
+     *
+     * @return 淘汰条目数
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 获取请求总次数
+     *
+     * @return 请求总次数
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * 获取命中率
+     *
+     * @return 命中率，没有请求时为1.0
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * 获取当前缓存条目数
+     *
+     * @return 条目数
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 获取缓存容量
+     *
+     * @return 容量
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", hitRate=" + String.format("%.4f", getHitRate()) +
+                ", size=" + size +
+                ", maxSize=" + maxSize +
+                '}';
+    }
+}
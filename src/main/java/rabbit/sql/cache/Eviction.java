@@ -0,0 +1,15 @@
+package rabbit.sql.cache;
+
+/**
+ * 缓存淘汰策略
+ */
+public enum Eviction {
+    /**
+     * 最近最少使用
+     */
+    LRU,
+    /**
+     * 先进先出
+     */
+    FIFO
+}
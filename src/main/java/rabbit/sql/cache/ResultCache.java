@@ -0,0 +1,243 @@
+package rabbit.sql.cache;
+
+import rabbit.common.types.DataRow;
+import rabbit.sql.utils.SqlUtil;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 查询结果缓存，以sql和参数为键缓存查询的全部结果行，用于缓存变化较少的参考数据表的查询<br>
+ * 只有查询中引用的表（from和join子句）全部通过{@link #cacheTable(String, long, TimeUnit)}注册过的查询才会被缓存，
+ * 条目的有效时间为所引用的表中最短的有效时间，超出容量时按淘汰策略移除<br>
+ * 每个表名（不含模式名）维护一个版本号，{@link #invalidate(Collection)}使表的版本号增加，
+ * 条目记录了查询执行前所引用的表的版本号，版本号不一致的条目视为失效，因此与写操作并发执行的查询也不会缓存旧数据<br>
+ * 缓存中保存的结果行不会被调用者修改，每次返回的都是结果行的副本：
+ * <blockquote>
+ * <pre>ResultCache cache = new ResultCache(1000, Eviction.LRU);
+ * cache.cacheTable("test.region", 10, TimeUnit.MINUTES);
+ * baki.setResultCache(cache);</pre>
+ * </blockquote>
+ */
+public final class ResultCache {
+    private final StatsCounter counter = new StatsCounter();
+    private final BoundedCache<String, Entry> cache;
+    private final BoundedCache<String, String[]> tablesCache = new BoundedCache<>(256, Eviction.LRU);
+    private final Map<String, Long> tableTtls = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * 构造函数
+     *
+     * @param maxSize  最大缓存的查询数
+     * @param eviction 淘汰策略
+     */
+    public ResultCache(int maxSize, Eviction eviction) {
+        this.cache = new BoundedCache<>(maxSize, eviction);
+    }
+
+    /**
+     * 注册一个可以缓存查询结果的表，表名不区分大小写，查询或写操作中带模式名的表（{@code test.region}）
+     * 也可以匹配只注册了表名（{@code region}）的表
+     *
+     * @param table 表名
+     * @param ttl   缓存有效时间
+     * @param unit  时间单位
+     */
+    public void cacheTable(String table, long ttl, TimeUnit unit) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive: " + ttl);
+        }
+        tableTtls.put(SqlUtil.normalizeTableName(table), unit.toMillis(ttl));
+        tablesCache.clear();
+    }
+
+    /**
+     * 判断查询是否可以缓存
+     *
+     * @param sql 最终执行的查询sql（sql文件中的sql，动态sql和{@code ${...}}片段已经展开）
+     * @return 是否可以缓存
+     */
+    public boolean isCacheable(String sql) {
+        return getTables(sql).length > 0;
+    }
+
+    /**
+     * 获取缓存的查询结果，如果不存在或已失效，则通过加载函数查询并放入缓存，查询不可以缓存时直接返回加载函数的结果<br>
+     * 加载函数抛出的异常直接传播给调用者，不缓存任何内容；返回缓存的结果行的副本，修改不影响缓存
+     *
+     * @param sql    最终执行的查询sql，同{@link #isCacheable(String)}
+     * @param args   参数
+     * @param loader 加载函数，返回查询的全部结果行，查询失败时应抛出异常而不是返回空结果
+     * @return 查询结果行
+     */
+    public List<DataRow> get(String sql, Map<String, Object> args, Supplier<List<DataRow>> loader) {
+        String[] tables = getTables(sql);
+        if (tables.length == 0) {
+            return loader.get();
+        }
+        String key = key(sql, args);
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            if (entry.isValid(this)) {
+                counter.recordHit();
+                return copyOf(entry.rows);
+            }
+            cache.remove(key);
+        }
+        counter.recordMiss();
+        // 先记录版本号再查询，查询期间发生的写操作将使此条目失效
+        long currentEpoch = epoch.get();
+        long[] versions = new long[tables.length];
+        long ttl = Long.MAX_VALUE;
+        for (int i = 0; i < tables.length; i++) {
+            versions[i] = version(tables[i]).get();
+            ttl = Math.min(ttl, tableTtls.get(tables[i]));
+        }
+        List<DataRow> rows = new ArrayList<>(loader.get());
+        cache.put(key, new Entry(rows, System.currentTimeMillis() + ttl, tables, versions, currentEpoch));
+        return copyOf(rows);
+    }
+
+    /**
+     * 使引用了指定表的缓存条目失效
+     *
+     * @param tables 表名集合
+     */
+    public void invalidate(Collection<String> tables) {
+        for (String table : tables) {
+            version(SqlUtil.normalizeTableName(table)).incrementAndGet();
+        }
+    }
+
+    /**
+     * 使全部缓存条目失效
+     */
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * 获取缓存统计信息，淘汰数为超出容量被移除的条目数，不包括失效的条目
+     *
+     * @return 统计信息快照
+     */
+    public CacheStats stats() {
+        CacheStats requests = counter.snapshot(0, 0);
+        return new CacheStats(requests.getHitCount(), requests.getMissCount(), cache.stats().getEvictionCount(), cache.size(), cache.getMaxSize());
+    }
+
+    /**
+     * 获取查询引用的表名，表名为注册的名字，有任意一个表未注册则返回空数组
+     *
+     * @param sql 查询sql
+     * @return 表名
+     */
+    private String[] getTables(String sql) {
+        return tablesCache.computeIfAbsent(sql, k -> {
+            Set<String> tables = SqlUtil.getQueryTableNames(k);
+            if (tables.isEmpty()) {
+                return new String[0];
+            }
+            Set<String> registered = new LinkedHashSet<>();
+            for (String table : tables) {
+                if (tableTtls.containsKey(table)) {
+                    registered.add(table);
+                } else {
+                    int dot = table.lastIndexOf('.');
+                    if (dot == -1 || !tableTtls.containsKey(table.substring(dot + 1))) {
+                        return new String[0];
+                    }
+                    registered.add(table.substring(dot + 1));
+                }
+            }
+            return registered.toArray(new String[0]);
+        });
+    }
+
+    /**
+     * 获取表的版本号，不同模式下的同名表共用一个版本号，写操作的表名带不带模式名都可以使缓存失效
+     *
+     * @param table 表名
+     * @return 版本号
+     */
+    private AtomicLong version(String table) {
+        int dot = table.lastIndexOf('.');
+        return tableVersions.computeIfAbsent(dot == -1 ? table : table.substring(dot + 1), k -> new AtomicLong());
+    }
+
+    /**
+     * 生成查询的缓存键，参数按名字排序
+     *
+     * @param sql  查询sql
+     * @param args 参数
+     * @return 缓存键
+     */
+    static String key(String sql, Map<String, Object> args) {
+        if (args == null || args.isEmpty()) {
+            return sql;
+        }
+        StringBuilder sb = new StringBuilder(sql).append(SqlUtil.SEP);
+        for (Map.Entry<String, Object> e : new TreeMap<>(args).entrySet()) {
+            sb.append(e.getKey()).append('=');
+            Object value = e.getValue();
+            if (value instanceof Object[]) {
+                sb.append(Arrays.deepToString((Object[]) value));
+            } else {
+                sb.append(value);
+            }
+            sb.append(SqlUtil.SEP);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 复制结果行，行中的值不复制
+     *
+     * @param rows 缓存的结果行
+     * @return 结果行的副本
+     */
+    static List<DataRow> copyOf(List<DataRow> rows) {
+        List<DataRow> copy = new ArrayList<>(rows.size());
+        for (DataRow row : rows) {
+            copy.add(DataRow.of(row.getNames().toArray(new String[0]), row.getTypes().toArray(new String[0]), row.getValues().toArray()));
+        }
+        return copy;
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class Entry {
+        private final List<DataRow> rows;
+        private final long expireAt;
+        private final String[] tables;
+        private final long[] versions;
+        private final long epoch;
+
+        Entry(List<DataRow> rows, long expireAt, String[] tables, long[] versions, long epoch) {
+            this.rows = rows;
+            this.expireAt = expireAt;
+            this.tables = tables;
+            this.versions = versions;
+            this.epoch = epoch;
+        }
+
+        boolean isValid(ResultCache owner) {
+            if (System.currentTimeMillis() > expireAt || epoch != owner.epoch.get()) {
+                return false;
+            }
+            for (int i = 0; i < tables.length; i++) {
+                if (owner.version(tables[i]).get() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
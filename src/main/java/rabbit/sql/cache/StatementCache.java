@@ -0,0 +1,94 @@
+package rabbit.sql.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 单个物理连接的预编译声明对象缓存，以预编译sql为键，超出容量时按LRU淘汰并关闭声明对象<br>
+ * 声明对象使用时从缓存中取出（checkout），使用完后放回（checkin），同一个声明对象同一时刻只会被一个操作持有，
+ * 嵌套使用同一句sql时（例如流查询还未关闭）将预编译一个新的声明对象，放回时多余的声明对象将被关闭<br>
+ * 缓存关闭（连接释放）后放回的声明对象将直接关闭
+ */
+public final class StatementCache {
+    private final static Logger log = LoggerFactory.getLogger(StatementCache.class);
+    private final BoundedCache<String, PreparedStatement> cache;
+    private volatile boolean closed;
+
+    /**
+     * 构造函数
+     *
+     * @param maxSize 最大缓存的声明对象数
+     * @param counter 统计计数器
+     */
+    public StatementCache(int maxSize, StatsCounter counter) {
+        this.cache = new BoundedCache<>(maxSize, Eviction.LRU, counter, (sql, statement) -> closeStatement(statement));
+    }
+
+    /**
+     * 取出一个预编译声明对象，不存在则预编译一个新的只进只读的声明对象
+     *
+     * @param connection 连接对象
+     * @param sql        预编译sql
+     * @return 声明对象
+     * @throws SQLException sqlEx
+     */
+    public PreparedStatement checkout(Connection connection, String sql) throws SQLException {
+        if (!closed) {
+            PreparedStatement statement = cache.take(sql);
+            if (statement != null && !statement.isClosed()) {
+                statement.clearParameters();
+                return statement;
+            }
+        }
+        return connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * 放回一个使用完的声明对象
+     *
+     * @param sql       预编译sql
+     * @param statement 声明对象
+     */
+    public void checkin(String sql, PreparedStatement statement) {
+        try {
+            if (closed || statement.isClosed() || cache.getMaxSize() == 0 || cache.putIfAbsent(sql, statement) != null) {
+                closeStatement(statement);
+            } else if (closed) {
+                // 放回的同时缓存被关闭
+                cache.clear();
+            }
+        } catch (SQLException e) {
+            closeStatement(statement);
+        }
+    }
+
+    /**
+     * 关闭缓存并关闭所有缓存的声明对象
+     */
+    public void close() {
+        closed = true;
+        cache.clear();
+    }
+
+    /**
+     * 获取当前缓存的声明对象数
+     *
+     * @return 声明对象数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.debug("close cached statement error: {}", e.getMessage());
+        }
+    }
+}
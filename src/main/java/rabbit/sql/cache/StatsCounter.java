@@ -0,0 +1,44 @@
+package rabbit.sql.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的缓存统计计数器，可由多个缓存共享以汇总统计信息
+ */
+public final class StatsCounter {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * 记录一次命中
+     */
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    /**
+     * 记录一次未命中
+     */
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    /**
+     * 记录一次淘汰
+     */
+    public void recordEviction() {
+        evictionCount.increment();
+    }
+
+    /**
+     * 获取统计信息快照
+     *
+     * @param size    当前条目数
+     * @param maxSize 容量
+     * @return 统计信息快照
+     */
+    public CacheStats snapshot(int size, int maxSize) {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), size, maxSize);
+    }
+}
@@ -0,0 +1,55 @@
+package rabbit.sql.cache;
+
+import rabbit.common.types.DataRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 事务内的一级查询缓存，以sql和参数为键缓存查询的全部结果行，随事务连接一起绑定在当前线程，事务结束后丢弃<br>
+ * 事务中执行任何写操作时清空，因此事务内读取的总是自己最新写入的数据<br>
+ * 每次返回的都是缓存的结果行的副本，修改不影响缓存
+ */
+public final class TransactionQueryCache {
+    private final BoundedCache<String, List<DataRow>> cache;
+
+    /**
+     * 构造函数
+     *
+     * @param maxSize 最大缓存的查询数
+     * @param counter 统计计数器
+     */
+    public TransactionQueryCache(int maxSize, StatsCounter counter) {
+        this.cache = new BoundedCache<>(maxSize, Eviction.LRU, counter, null);
+    }
+
+    /**
+     * 获取缓存的查询结果，如果不存在，则通过加载函数查询并放入缓存，加载函数抛出的异常直接传播给调用者，不缓存任何内容
+     *
+     * @param sql    查询sql
+     * @param args   参数
+     * @param loader 加载函数，返回查询的全部结果行，查询失败时应抛出异常而不是返回空结果
+     * @return 查询结果行的副本
+     */
+    public List<DataRow> get(String sql, Map<String, Object> args, Supplier<List<DataRow>> loader) {
+        return ResultCache.copyOf(cache.computeIfAbsent(ResultCache.key(sql, args), k -> new ArrayList<>(loader.get())));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 获取当前缓存的查询数
+     *
+     * @return 查询数
+     */
+    public int size() {
+        return cache.size();
+    }
+}
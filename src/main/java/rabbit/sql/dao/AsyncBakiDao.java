@@ -0,0 +1,274 @@
+package rabbit.sql.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rabbit.common.types.DataRow;
+import rabbit.sql.AsyncBaki;
+import rabbit.sql.Baki;
+import rabbit.sql.datasource.AbstractTransactionSyncManager;
+import rabbit.sql.support.ICondition;
+import rabbit.sql.transaction.Tx;
+import rabbit.sql.types.DataFrame;
+import rabbit.sql.types.Param;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 异步dao的默认实现，将{@link BakiDao}的同步操作提交到线程池执行<br>
+ * <ul>
+ *     <li>线程池可以自定义，默认在支持虚拟线程的JDK上使用虚拟线程，否则使用固定大小的线程池；</li>
+ *     <li>同时执行的操作数不超过最大并发数（默认为连接池的最大连接数），超出的操作在工作线程中等待，不会耗尽连接池；</li>
+ *     <li>调用线程处于事务中时，操作直接在调用线程中同步执行以加入当前事务，返回已完成的{@link CompletableFuture}；</li>
+ *     <li>工作线程上残留的事务（线程池复用的线程中未提交的事务）在执行前后都会被回滚并清理。</li>
+ * </ul>
+ *
+ * @see AsyncBaki
+ */
+public class AsyncBakiDao implements AsyncBaki, AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(AsyncBakiDao.class);
+    /**
+     * 无法获取连接池大小时的默认最大并发数
+     */
+    private static final int DEFAULT_MAX_CONCURRENCY = 10;
+    private final Baki baki;
+    private final Executor executor;
+    private final boolean ownExecutor;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    /**
+     * 构造函数
+     *
+     * @param baki           同步dao
+     * @param executor       线程池
+     * @param maxConcurrency 最大并发数
+     */
+    public AsyncBakiDao(Baki baki, Executor executor, int maxConcurrency) {
+        this(baki, executor, maxConcurrency, false);
+    }
+
+    private AsyncBakiDao(Baki baki, Executor executor, int maxConcurrency, boolean ownExecutor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than 0.");
+        }
+        this.baki = baki;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * 实例化一个AsyncBakiDao对象，最大并发数为连接池的最大连接数，使用默认的线程池
+     *
+     * @param bakiDao 同步dao
+     * @return AsyncBakiDao实例
+     */
+    public static AsyncBakiDao of(BakiDao bakiDao) {
+        return of(bakiDao, getMaxPoolSize(bakiDao.getDataSource()));
+    }
+
+    /**
+     * 实例化一个AsyncBakiDao对象，使用默认的线程池（虚拟线程或固定大小的线程池）
+     *
+     * @param baki           同步dao
+     * @param maxConcurrency 最大并发数，应不大于连接池的最大连接数
+     * @return AsyncBakiDao实例
+     */
+    public static AsyncBakiDao of(Baki baki, int maxConcurrency) {
+        return new AsyncBakiDao(baki, defaultExecutor(maxConcurrency), maxConcurrency, true);
+    }
+
+    /**
+     * 默认的线程池，JDK支持虚拟线程时使用虚拟线程，否则使用固定大小的守护线程池
+     *
+     * @param maxConcurrency 最大并发数
+     * @return 线程池
+     */
+    private static ExecutorService defaultExecutor(int maxConcurrency) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            log.debug("use virtual thread executor.");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxConcurrency, r -> {
+                Thread thread = new Thread(r, "rabbit-sql-async-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 获取常用连接池（HikariCP，Druid，DBCP等）的最大连接数
+     *
+     * @param dataSource 数据源
+     * @return 最大连接数
+     */
+    private static int getMaxPoolSize(DataSource dataSource) {
+        for (String name : new String[]{"getMaximumPoolSize", "getMaxActive", "getMaxTotal"}) {
+            try {
+                Object size = dataSource.getClass().getMethod(name).invoke(dataSource);
+                if (size instanceof Integer && (Integer) size > 0) {
+                    return (Integer) size;
+                }
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+        return DEFAULT_MAX_CONCURRENCY;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(Function<Baki, T> action) {
+        // 调用线程的事务资源绑定在线程上，工作线程无法加入，所以在调用线程中同步执行
+        if (AbstractTransactionSyncManager.isTransactionActive()) {
+            log.debug("transaction is active on current thread, execute synchronously.");
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete(action.apply(baki));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                rollbackLeftTransaction();
+                return action.apply(baki);
+            } finally {
+                try {
+                    rollbackLeftTransaction();
+                } finally {
+                    permits.release();
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * 回滚并清理当前工作线程上残留的事务，避免之后的操作加入一个不会被提交的事务
+     */
+    private void rollbackLeftTransaction() {
+        if (AbstractTransactionSyncManager.isTransactionActive() || AbstractTransactionSyncManager.isSynchronizationActive()) {
+            log.warn("unfinished transaction found on thread [{}], it will rollback.", Thread.currentThread().getName());
+            Tx.rollback();
+        }
+    }
+
+    @Override
+    public CompletableFuture<DataRow> execute(String sql) {
+        return submit(b -> b.execute(sql));
+    }
+
+    @Override
+    public CompletableFuture<DataRow> execute(String sql, Map<String, Object> args) {
+        return submit(b -> b.execute(sql, args));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insert(DataFrame dataFrame) {
+        return submit(b -> b.insert(dataFrame));
+    }
+
+    @Override
+    public CompletableFuture<Integer> delete(String tableName, ICondition ICondition) {
+        return submit(b -> b.delete(tableName, ICondition));
+    }
+
+    @Override
+    public CompletableFuture<Integer> update(String tableName, Map<String, Object> data, ICondition ICondition) {
+        return submit(b -> b.update(tableName, data, ICondition));
+    }
+
+    @Override
+    public CompletableFuture<List<DataRow>> query(String sql) {
+        return query(sql, Args.create());
+    }
+
+    @Override
+    public CompletableFuture<List<DataRow>> query(String sql, Map<String, Object> args) {
+        return submit(b -> {
+            try (Stream<DataRow> s = b.query(sql, args)) {
+                return s.collect(Collectors.toList());
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<DataRow>> fetch(String sql) {
+        return submit(b -> b.fetch(sql));
+    }
+
+    @Override
+    public CompletableFuture<Optional<DataRow>> fetch(String sql, Map<String, Object> args) {
+        return submit(b -> b.fetch(sql, args));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String sql) {
+        return submit(b -> b.exists(sql));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String sql, Map<String, Object> args) {
+        return submit(b -> b.exists(sql, args));
+    }
+
+    @Override
+    public CompletableFuture<DataRow> call(String name, Map<String, Param> args) {
+        return submit(b -> b.call(name, args));
+    }
+
+    /**
+     * 获取同步dao
+     *
+     * @return 同步dao
+     */
+    public Baki getBaki() {
+        return baki;
+    }
+
+    /**
+     * 获取最大并发数
+     *
+     * @return 最大并发数
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 获取正在执行的操作数
+     *
+     * @return 正在执行的操作数
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * 关闭默认创建的线程池，自定义的线程池需要自行关闭
+     */
+    @Override
+    public void close() {
+        if (ownExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+}
@@ -1,26 +1,52 @@
 package rabbit.sql.dao;
 
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rabbit.common.tuple.Pair;
 import rabbit.common.types.DataRow;
+import rabbit.common.types.NamedThreadLocal;
 import rabbit.sql.Baki;
+import rabbit.sql.cache.BoundedCache;
+import rabbit.sql.cache.CacheStats;
+import rabbit.sql.cache.Eviction;
+import rabbit.sql.cache.ResultCache;
+import rabbit.sql.cache.StatementCache;
+import rabbit.sql.cache.StatsCounter;
+import rabbit.sql.cache.TransactionQueryCache;
+import rabbit.sql.datasource.AbstractTransactionSyncManager;
+import rabbit.sql.datasource.ConnectionHolder;
 import rabbit.sql.datasource.DataSourceUtil;
+import rabbit.sql.datasource.ReplicaSet;
 import rabbit.sql.page.IPageable;
+import rabbit.sql.support.BindingPlan;
 import rabbit.sql.support.ICondition;
+import rabbit.sql.support.IFilter;
 import rabbit.sql.support.JdbcSupport;
+import rabbit.sql.support.ScriptResult;
 import rabbit.sql.types.DataFrame;
 import rabbit.sql.types.Param;
 import rabbit.sql.utils.JdbcUtil;
+import rabbit.sql.utils.SqlScriptReader;
 import rabbit.sql.utils.SqlUtil;
 
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static rabbit.sql.utils.SqlUtil.dynamicSql;
@@ -40,9 +66,21 @@ import static rabbit.sql.utils.SqlUtil.dynamicSql;
  */
 public class BakiDao extends JdbcSupport implements Baki {
     private final static Logger log = LoggerFactory.getLogger(BakiDao.class);
+    /**
+     * in条件使用临时表的最少值数量
+     */
+    private static final int TEMP_TABLE_IN_THRESHOLD = 1000;
     private final DataSource dataSource;
     private SQLFileManager sqlFileManager;
     private DatabaseMetaData metaData;
+    private volatile String databaseName;
+    private final BoundedCache<String, String> multiValuesInsertCache = new BoundedCache<>(64, Eviction.LRU);
+    private volatile ResultCache resultCache;
+    private int transactionCacheSize = 0;
+    private final StatsCounter transactionCacheCounter = new StatsCounter();
+    private volatile ReplicaSet replicas;
+    private final ThreadLocal<DataSource> routedDataSource = new NamedThreadLocal<>("routed data source");
+    private final ThreadLocal<Set<String>> inKeysTablesInUse = new NamedThreadLocal<>("in keys tables in use");
 
     /**
      * 构造函数
@@ -79,50 +117,625 @@ public class BakiDao extends JdbcSupport implements Baki {
         }
     }
 
+    /**
+     * 设置查询结果缓存，为null则不缓存（默认）<br>
+     * {@link #query(String, Map)}，{@link #fetch(String, Map)}和{@link #exists(String, Map)}
+     * 在没有活动的事务时从缓存中读取可以缓存的查询（查询流在缓存命中时不占用连接），
+     * 通过本对象执行的写操作将使引用了被修改的表的缓存条目失效，无法判断修改的表时（例如存储过程和sql脚本）使全部条目失效；
+     * 在事务中的写操作在事务结束后会再次使缓存失效，避免其他线程在事务提交前缓存旧数据<br>
+     * 其他途径（其他应用或直接使用连接）修改的数据只能等待缓存条目过期
+     *
+     * @param resultCache 查询结果缓存
+     * @see ResultCache
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * 获取查询结果缓存
+     *
+     * @return 查询结果缓存，未设置则为null
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * 设置事务内一级查询缓存的容量，默认0（不缓存）<br>
+     * 大于0时，事务中的{@link #query(String, Map)}，{@link #fetch(String, Map)}和{@link #exists(String, Map)}
+     * 对相同的sql和参数只查询一次（查询的结果将被全部读取），适用于在事务中循环查找相同数据的场景；
+     * 事务中通过本对象执行任何写操作时清空缓存，事务结束后缓存被丢弃<br>
+     * 直接使用事务连接执行的写操作不会清空缓存
+     *
+     * @param transactionCacheSize 每个事务最多缓存的查询数
+     */
+    public void setTransactionCacheSize(int transactionCacheSize) {
+        if (transactionCacheSize < 0) {
+            throw new IllegalArgumentException("transaction cache size must not be negative: " + transactionCacheSize);
+        }
+        this.transactionCacheSize = transactionCacheSize;
+    }
+
+    /**
+     * 获取事务内一级查询缓存的容量
+     *
+     * @return 每个事务最多缓存的查询数
+     */
+    public int getTransactionCacheSize() {
+        return transactionCacheSize;
+    }
+
+    /**
+     * 获取全部事务的一级查询缓存汇总的统计信息，条目数和容量为单个事务的缓存
+     *
+     * @return 缓存统计信息
+     */
+    public CacheStats getTransactionCacheStats() {
+        return transactionCacheCounter.snapshot(0, transactionCacheSize);
+    }
+
+    /**
+     * 获取当前事务的一级查询缓存
+     *
+     * @return 查询缓存，未开启缓存或不在事务中则为null
+     */
+    private TransactionQueryCache getTransactionQueryCache() {
+        if (transactionCacheSize == 0 || !AbstractTransactionSyncManager.isTransactionActive()) {
+            return null;
+        }
+        Connection connection = getConnection();
+        try {
+            return DataSourceUtil.getQueryCache(connection, getDataSource(), () -> new TransactionQueryCache(transactionCacheSize, transactionCacheCounter));
+        } finally {
+            releaseConnection(connection, getDataSource());
+        }
+    }
+
+    /**
+     * 写操作之后使查询结果缓存中引用了被修改的表的条目失效，当前在事务中时，清空事务的一级查询缓存，
+     * 并在事务结束后再次使查询结果缓存失效；设置了从库时，当前线程的查询开始固定在主库执行
+     *
+     * @param tables 被修改的表名集合，为null则使全部条目失效
+     */
+    private void afterWrite(Collection<String> tables) {
+        if (tables != null && tables.isEmpty()) {
+            return;
+        }
+        ConnectionHolder holder = AbstractTransactionSyncManager.isTransactionActive() ? AbstractTransactionSyncManager.getResource(dataSource) : null;
+        if (holder != null && holder.getQueryCache() != null) {
+            holder.getQueryCache().clear();
+        }
+        ReplicaSet replicaSet = replicas;
+        if (replicaSet != null) {
+            replicaSet.markWrite();
+            if (holder != null) {
+                // 时间窗口从事务结束时开始计算
+                holder.addCompletionCallback(replicaSet::markWrite);
+            }
+        }
+        ResultCache cache = resultCache;
+        if (cache == null) {
+            return;
+        }
+        Runnable invalidate = tables == null ? cache::invalidateAll : () -> cache.invalidate(tables);
+        invalidate.run();
+        if (holder != null) {
+            holder.addCompletionCallback(invalidate);
+        }
+    }
+
+    /**
+     * 获取语句可能修改的表
+     *
+     * @param sql sql
+     * @return 表名集合，无法判断时（例如sql文件中的sql或存储过程）为null
+     */
+    private static Set<String> getModifiedTables(String sql) {
+        if (sql.startsWith("&")) {
+            return null;
+        }
+        Set<String> tables = SqlUtil.getModifiedTableNames(sql);
+        if (!tables.isEmpty()) {
+            return tables;
+        }
+        String lower = sql.trim().toLowerCase();
+        return lower.startsWith("select") || lower.startsWith("with") || lower.startsWith("create") ? tables : null;
+    }
+
+    /**
+     * 设置读写分离的从库集合，为null则全部操作在主库执行（默认）<br>
+     * 没有活动的事务时，{@link #query(String, Map)}，{@link #fetch(String, Map)}和{@link #exists(String, Map)}
+     * 在按负载均衡策略选择的从库中执行；只读事务（{@link rabbit.sql.transaction.Definition#isReadOnly()}）
+     * 在首次获取连接时选择一个从库，整个事务都在此从库中执行；其他操作和非只读事务中的全部操作在主库执行<br>
+     * 通过本对象执行写操作之后，当前线程在{@link ReplicaSet#setPinWindow(long, java.util.concurrent.TimeUnit)}时间窗口内的查询固定在主库执行
+     *
+     * @param replicas 从库集合
+     */
+    public void setReplicas(ReplicaSet replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * 获取读写分离的从库集合
+     *
+     * @return 从库集合，未设置则为null
+     */
+    public ReplicaSet getReplicas() {
+        return replicas;
+    }
+
     @Override
     public DataRow execute(String sql) {
-        return executeAny(sql, Collections.emptyMap());
+        return execute(sql, Collections.emptyMap());
     }
 
     @Override
     public DataRow execute(String sql, Map<String, Object> args) {
-        return executeAny(sql, args);
+        try {
+            return executeAny(sql, args);
+        } finally {
+            afterWrite(getModifiedTables(sql));
+        }
     }
 
     @Override
     public int insert(DataFrame dataFrame) {
+        try {
+            return doInsert(dataFrame);
+        } finally {
+            afterWrite(Collections.singletonList(dataFrame.getTableName()));
+        }
+    }
+
+    private int doInsert(DataFrame dataFrame) {
         Collection<Map<String, Object>> data = dataFrame.getRows();
         Iterator<Map<String, Object>> iterator = data.iterator();
         if (iterator.hasNext()) {
             Map<String, Object> first = new HashMap<>(iterator.next());
-            List<String> tableFields = Collections.emptyList();
-            if (!dataFrame.isStrict()) {
-                log.debug("prepare for non-strict insert...");
-                tableFields = execute(dataFrame.getTableFieldsSql(), sc -> {
-                    sc.executeQuery();
-                    ResultSet fieldsResultSet = sc.getResultSet();
-                    List<String> fields = Arrays.asList(JdbcUtil.createNames(fieldsResultSet, ""));
-                    JdbcUtil.closeResultSet(fieldsResultSet);
-                    log.debug("all fields of table: {} {}", dataFrame.getTableName(), fields);
-                    return fields;
-                });
-            }
-            String insertSql = SqlUtil.generateInsert(dataFrame.getTableName(), first, dataFrame.getIgnore(), tableFields);
+            String insertSql = getInsertSql(dataFrame, first);
+            if (dataFrame.getMultiValues() > 1 && data.size() > 1) {
+                int maxParameters = getMaxBindParameters();
+                int rows = Math.min(dataFrame.getMultiValues(), maxParameters / first.size());
+                // SQL Server 单条values最多1000行
+                if (getDatabaseName().equals("microsoft sql server")) {
+                    rows = Math.min(rows, 1000);
+                }
+                if (rows > 1) {
+                    return insertMultiValues(dataFrame.getTableName(), new ArrayList<>(first.keySet()), data, rows);
+                }
+                log.debug("multi values insert not available, rows per statement: {}, fallback to batch insert.", rows);
+            }
             return executeNonQuery(insertSql, data);
         }
         return -1;
     }
 
+    /**
+     * 插入并按数据的顺序返回数据库生成的键，多行插入模式（{@link DataFrame#multiValues(int)}）对此操作无效，
+     * 数据以普通的批量插入执行，每批执行后读取该批生成的键
+     *
+     * @param dataFrame  数据
+     * @param keyColumns 生成键的列名，为空则由驱动决定返回的列（Oracle需要指定，否则返回{@code ROWID}）
+     * @return 每行数据生成的键，顺序与数据的顺序一致
+     * @see #executeNonQueryReturningKeys(String, Collection, String...)
+     */
+    @Override
+    public List<DataRow> insertReturningKeys(DataFrame dataFrame, String... keyColumns) {
+        Collection<Map<String, Object>> data = dataFrame.getRows();
+        if (data.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String insertSql = getInsertSql(dataFrame, new HashMap<>(data.iterator().next()));
+        try {
+            return executeNonQueryReturningKeys(insertSql, data, keyColumns);
+        } finally {
+            afterWrite(Collections.singletonList(dataFrame.getTableName()));
+        }
+    }
+
+    @Override
+    public long[] insertReturningIds(DataFrame dataFrame, String keyColumn) {
+        List<DataRow> keys = keyColumn == null ? insertReturningKeys(dataFrame) : insertReturningKeys(dataFrame, keyColumn);
+        long[] ids = new long[keys.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Object id = keys.get(i).get(0);
+            if (id instanceof Number) {
+                ids[i] = ((Number) id).longValue();
+            } else if (id != null) {
+                ids[i] = Long.parseLong(id.toString());
+            } else {
+                throw new IllegalStateException("generated key of row " + i + " is null.");
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 根据第一行数据生成插入语句，非严格模式下只插入表中存在的字段
+     *
+     * @param dataFrame 数据
+     * @param first     第一行数据
+     * @return 插入语句
+     */
+    private String getInsertSql(DataFrame dataFrame, Map<String, Object> first) {
+        return SqlUtil.generateInsert(dataFrame.getTableName(), first, dataFrame.getIgnore(), getTableFields(dataFrame));
+    }
+
+    /**
+     * 非严格模式下获取表的所有字段，严格模式下返回空集合
+     *
+     * @param dataFrame 数据
+     * @return 表字段
+     */
+    private List<String> getTableFields(DataFrame dataFrame) {
+        if (dataFrame.isStrict()) {
+            return Collections.emptyList();
+        }
+        log.debug("prepare for non-strict insert...");
+        return execute(dataFrame.getTableFieldsSql(), sc -> {
+            sc.executeQuery();
+            ResultSet fieldsResultSet = sc.getResultSet();
+            List<String> fields = Arrays.asList(JdbcUtil.createNames(fieldsResultSet, ""));
+            JdbcUtil.closeResultSet(fieldsResultSet);
+            log.debug("all fields of table: {} {}", dataFrame.getTableName(), fields);
+            return fields;
+        });
+    }
+
+    /**
+     * 批量合并（upsert）数据，存在冲突的行更新，否则插入，语句根据数据库生成：
+     * <ul>
+     *     <li>PostgreSQL，SQLite：{@code insert ... on conflict (keys) do update}；</li>
+     *     <li>MySQL，MariaDB：{@code insert ... on duplicate key update}；</li>
+     *     <li>Oracle，SQL Server：{@code merge into}。</li>
+     * </ul>
+     * 字段由第一行数据决定（同{@link #insert(DataFrame)}），以{@link #getBatchSize()}行为一批执行；
+     * {@link DataFrame#staging(boolean)}为true并且数据库支持时，数据先批量插入临时表，再以一条语句合并到目标表，
+     * 冲突字段值相同的多行只保留最后一行（PostgreSQL的一条合并语句不能两次更新同一行），与逐行合并的最终结果一致
+     *
+     * @param dataFrame    数据
+     * @param conflictKeys 冲突判断的字段（主键或唯一索引字段）
+     * @return 受影响的行数（由驱动决定，例如MySQL中更新的行计为2）
+     */
+    @Override
+    public int upsert(DataFrame dataFrame, String... conflictKeys) {
+        try {
+            return doUpsert(dataFrame, conflictKeys);
+        } finally {
+            afterWrite(Collections.singletonList(dataFrame.getTableName()));
+        }
+    }
+
+    private int doUpsert(DataFrame dataFrame, String... conflictKeys) {
+        Collection<Map<String, Object>> data = dataFrame.getRows();
+        if (data.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = Arrays.asList(conflictKeys);
+        Map<String, Object> first = new HashMap<>(data.iterator().next());
+        String dbName = getDatabaseName();
+        String upsertSql = SqlUtil.generateUpsert(dbName, dataFrame.getTableName(), first, dataFrame.getIgnore(), getTableFields(dataFrame), keys);
+        if (dataFrame.isStaging()) {
+            switch (dbName) {
+                case "postgresql":
+                case "sqlite":
+                case "mysql":
+                case "mariadb":
+                    return upsertStaging(dbName, dataFrame.getTableName(), new ArrayList<>(first.keySet()), data, keys);
+                default:
+                    log.debug("staging upsert is not supported by {}, fallback to batch upsert.", dbName);
+            }
+        }
+        return executeNonQuery(upsertSql, data);
+    }
+
+    /**
+     * 根据值的数量和数据库选择in条件的实现方式，并在此范围内执行操作：
+     * <ul>
+     *     <li>PostgreSQL：{@link Filter#anyOf(String, Collection)}，整个集合作为一个数组参数绑定；</li>
+     *     <li>值的数量超过{@value #TEMP_TABLE_IN_THRESHOLD}个，处于事务中并且数据库支持临时表（MySQL，MariaDB，SQLite）时：
+     *     值批量写入临时表，使用{@link Filter#inTable(String, String, String)}连接查询；
+     *     临时表按值的类型使用固定的表名（{@code rabbit_in_keys_int}，{@code rabbit_in_keys_num}，{@code rabbit_in_keys_str}），
+     *     在连接中第一次使用时创建，每次使用前清空，使sql和预编译的缓存可以复用；</li>
+     *     <li>其他情况：{@link Filter#in(String, Collection)}，占位符数量按2的幂分桶。</li>
+     * </ul>
+     * 使用临时表时，查询流等惰性结果必须在操作中消费完：
+     * <blockquote>
+     * <pre>List&lt;DataRow&gt; rows = Tx.using(() -&gt; baki.withInFilter("id", ids, filter -&gt; {
+     *       Condition cnd = Condition.where(filter);
+     *       try (Stream&lt;DataRow&gt; s = baki.query("select * from test.user" + cnd.getSql(), cnd.getArgs())) {
+     *           return s.collect(Collectors.toList());
+     *       }
+     *   }));</pre>
+     * </blockquote>
+     *
+     * @param field  字段名
+     * @param values 值集合
+     * @param action 使用in条件的操作
+     * @param <T>    结果类型参数
+     * @return 操作结果
+     */
+    public <T> T withInFilter(String field, Collection<?> values, Function<IFilter, T> action) {
+        String dbName = getDatabaseName();
+        if (dbName.equals("postgresql") && !values.isEmpty()) {
+            return action.apply(Filter.anyOf(field, values));
+        }
+        if (values.size() > TEMP_TABLE_IN_THRESHOLD && AbstractTransactionSyncManager.isTransactionActive()) {
+            switch (dbName) {
+                case "mysql":
+                case "mariadb":
+                case "sqlite":
+                    String table = loadTempKeysTable(dbName, values);
+                    if (table == null) {
+                        break;
+                    }
+                    try {
+                        return action.apply(Filter.inTable(field, table, "k"));
+                    } finally {
+                        try {
+                            // 释放临时表占用的空间，表保留在连接中下次使用
+                            executeAny("delete from " + table, Collections.emptyMap());
+                        } finally {
+                            releaseTempKeysTable(table);
+                        }
+                    }
+                default:
+            }
+        }
+        return action.apply(Filter.in(field, values));
+    }
+
+    /**
+     * 将值批量写入只有一列（k）的临时表，表名按值的类型固定，不存在时创建（带索引），写入前清空，
+     * 需在事务中调用以保证后续操作使用同一个连接
+     *
+     * @param dbName 数据库名
+     * @param values 值集合
+     * @return 临时表名，当前线程正在使用同名的临时表（嵌套调用）时返回null
+     */
+    private String loadTempKeysTable(String dbName, Collection<?> values) {
+        Object sample = values.stream().filter(Objects::nonNull).findFirst().orElse(null);
+        String table;
+        String type;
+        if (sample instanceof Integer || sample instanceof Long || sample instanceof Short || sample instanceof Byte || sample instanceof java.math.BigInteger) {
+            table = "rabbit_in_keys_int";
+            type = "bigint";
+        } else if (sample instanceof Number) {
+            table = "rabbit_in_keys_num";
+            type = dbName.equals("sqlite") ? "numeric" : "decimal(38,10)";
+        } else {
+            table = "rabbit_in_keys_str";
+            type = dbName.equals("sqlite") ? "text" : "varchar(255)";
+        }
+        Set<String> inUse = inKeysTablesInUse.get();
+        if (inUse == null) {
+            inUse = new HashSet<>();
+            inKeysTablesInUse.set(inUse);
+        }
+        if (!inUse.add(table)) {
+            log.debug("temporary table {} is in use, fallback to in filter.", table);
+            return null;
+        }
+        try {
+            if (dbName.equals("sqlite")) {
+                executeAny("create temporary table if not exists " + table + " (k " + type + ")", Collections.emptyMap());
+                executeAny("create index if not exists " + table + "_k on " + table + " (k)", Collections.emptyMap());
+            } else {
+                executeAny("create temporary table if not exists " + table + " (k " + type + ", index (k))", Collections.emptyMap());
+            }
+            executeAny("delete from " + table, Collections.emptyMap());
+            List<Map<String, Object>> rows = new ArrayList<>(values.size());
+            for (Object value : values) {
+                rows.add(Collections.singletonMap("k", value));
+            }
+            executeNonQuery("insert into " + table + " (k) values (:k)", rows);
+            log.debug("{} keys loaded into temporary table {}.", rows.size(), table);
+            return table;
+        } catch (RuntimeException e) {
+            releaseTempKeysTable(table);
+            throw e;
+        }
+    }
+
+    private void releaseTempKeysTable(String table) {
+        Set<String> inUse = inKeysTablesInUse.get();
+        inUse.remove(table);
+        if (inUse.isEmpty()) {
+            inKeysTablesInUse.remove();
+        }
+    }
+
+    /**
+     * 通过临时表合并数据，临时表、批量插入和合并语句在同一个连接中执行，完成后删除临时表<br>
+     * 冲突字段值相同的多行只有最后一行插入临时表
+     *
+     * @param dbName       数据库名
+     * @param tableName    目标表名
+     * @param fields       字段
+     * @param data         数据
+     * @param conflictKeys 冲突判断的字段
+     * @return 受影响的行数
+     */
+    private int upsertStaging(String dbName, String tableName, List<String> fields, Collection<Map<String, Object>> data, List<String> conflictKeys) {
+        String stagingTable = "rabbit_staging_" + Long.toHexString(System.nanoTime());
+        String mergeSql = SqlUtil.generateStagingUpsert(dbName, tableName, stagingTable, fields, conflictKeys);
+        String insertSql = "insert into " + stagingTable + "(" + String.join(", ", fields) + ") values (" + fields.stream().map(f -> ":" + f).collect(Collectors.joining(", ")) + ")";
+        log.debug("SQL:{}", mergeSql);
+        Collection<Map<String, Object>> rows = distinctByKeys(data, conflictKeys);
+        if (rows.size() < data.size()) {
+            log.debug("{} rows with duplicate conflict keys {} are merged by the last one.", data.size() - rows.size(), conflictKeys);
+        }
+        Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(insertSql);
+        String preparedSql = preparedSqlAndArgNames.getItem1();
+        List<String> argNames = preparedSqlAndArgNames.getItem2();
+        Connection connection = getConnection();
+        try (Statement statement = connection.createStatement()) {
+            applyQueryTimeout(statement);
+            statement.execute("create temporary table " + stagingTable + " as select " + String.join(", ", fields) + " from " + tableName + " where 1 = 0");
+            try {
+                try (PreparedStatement ps = connection.prepareStatement(preparedSql)) {
+                    applyQueryTimeout(ps);
+                    BindingPlan plan = getBindingPlan(preparedSql, ps, argNames);
+                    if (rows.size() > 1 && getBatchSize() > 1 && supportsBatchUpdates(connection)) {
+                        executeBatch(ps, preparedSql, plan, rows, argNames, null);
+                    } else {
+                        for (Map<String, Object> row : rows) {
+                            plan.bind(ps, row, argNames);
+                            ps.executeUpdate();
+                        }
+                    }
+                }
+                // 按剩余时间重新设置超时
+                applyQueryTimeout(statement);
+                int count = statement.executeUpdate(mergeSql);
+                log.debug("{} rows merged into {} through {}.", count, tableName, stagingTable);
+                return count;
+            } finally {
+                try {
+                    statement.execute("drop table " + stagingTable);
+                } catch (SQLException e) {
+                    log.warn("drop staging table {} failed: {}", stagingTable, e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("upsert into [" + tableName + "] through staging table error: ", e);
+        } finally {
+            releaseConnection(connection, getDataSource());
+        }
+    }
+
+    /**
+     * 按冲突字段的值去重，相同的值保留最后一行
+     *
+     * @param data         数据
+     * @param conflictKeys 冲突判断的字段
+     * @return 去重后的数据
+     */
+    private static Collection<Map<String, Object>> distinctByKeys(Collection<Map<String, Object>> data, List<String> conflictKeys) {
+        Map<List<Object>, Map<String, Object>> distinct = new LinkedHashMap<>();
+        for (Map<String, Object> row : data) {
+            List<Object> key = new ArrayList<>(conflictKeys.size());
+            for (String k : conflictKeys) {
+                key.add(row.get(k));
+            }
+            distinct.put(key, row);
+        }
+        return distinct.values();
+    }
+
+    /**
+     * 以多行插入语句插入数据，完整行数的语句以批量方式执行，最后不足行数的部分单独执行
+     *
+     * @param tableName 表名
+     * @param fields    字段
+     * @param data      数据
+     * @param rows      每条语句的行数
+     * @return 受影响的行数
+     */
+    private int insertMultiValues(String tableName, List<String> fields, Collection<Map<String, Object>> data, int rows) {
+        int count = 0;
+        List<Map<String, Object>> chunks = new ArrayList<>();
+        Map<String, Object> chunk = new HashMap<>();
+        int row = 0;
+        for (Map<String, Object> item : data) {
+            for (String field : fields) {
+                if (item.containsKey(field)) {
+                    chunk.put(SqlUtil.getMultiValuesArgName(field, row), item.get(field));
+                }
+            }
+            if (++row == rows) {
+                chunks.add(chunk);
+                chunk = new HashMap<>();
+                row = 0;
+                if (chunks.size() == Math.max(getBatchSize(), 1)) {
+                    count += executeNonQuery(getMultiValuesInsert(tableName, fields, rows), chunks);
+                    chunks.clear();
+                }
+            }
+        }
+        if (!chunks.isEmpty()) {
+            count += executeNonQuery(getMultiValuesInsert(tableName, fields, rows), chunks);
+        }
+        if (row > 0) {
+            count += executeNonQuery(getMultiValuesInsert(tableName, fields, row), Collections.singletonList(chunk));
+        }
+        return count;
+    }
+
+    /**
+     * 获取已缓存的多行插入语句，完整行数和最后不足行数的语句分别缓存
+     *
+     * @param tableName 表名
+     * @param fields    字段
+     * @param rows      行数
+     * @return 多行插入语句
+     */
+    private String getMultiValuesInsert(String tableName, List<String> fields, int rows) {
+        String key = tableName + SqlUtil.SEP + fields + SqlUtil.SEP + rows;
+        return multiValuesInsertCache.computeIfAbsent(key, k -> SqlUtil.generateMultiValuesInsert(tableName, fields, rows));
+    }
+
+    /**
+     * 获取数据库单条语句允许的最多绑定参数个数，不支持多行插入语法的数据库返回0
+     *
+     * @return 最多绑定参数个数
+     */
+    private int getMaxBindParameters() {
+        switch (getDatabaseName()) {
+            case "sqlite":
+                return 999;
+            case "postgresql":
+                return Short.MAX_VALUE;
+            case "mysql":
+            case "mariadb":
+                return 65535;
+            case "microsoft sql server":
+                return 2100;
+            case "oracle":
+                return 0;
+            default:
+                return 999;
+        }
+    }
+
+    /**
+     * 获取数据库名（小写）
+     *
+     * @return 数据库名
+     */
+    private String getDatabaseName() {
+        if (databaseName == null) {
+            Connection connection = getConnection();
+            try {
+                databaseName = connection.getMetaData().getDatabaseProductName().toLowerCase();
+            } catch (SQLException e) {
+                throw new RuntimeException("get db metadata error: " + e.getMessage());
+            } finally {
+                releaseConnection(connection, getDataSource());
+            }
+        }
+        return databaseName;
+    }
+
     @Override
     public int delete(String tableName, ICondition ICondition) {
-        return executeNonQuery("delete from " + tableName + " " + ICondition.getSql(), Collections.singletonList(ICondition.getArgs()));
+        try {
+            return executeNonQuery("delete from " + tableName + " " + ICondition.getSql(), Collections.singletonList(ICondition.getArgs()));
+        } finally {
+            afterWrite(Collections.singletonList(tableName));
+        }
     }
 
     @Override
     public int update(String tableName, Map<String, Object> data, ICondition ICondition) {
         String update = SqlUtil.generateUpdate(tableName, data);
         data.putAll(ICondition.getArgs());
-        return executeNonQuery(update + ICondition.getSql(), Collections.singletonList(data));
+        try {
+            return executeNonQuery(update + ICondition.getSql(), Collections.singletonList(data));
+        } finally {
+            afterWrite(Collections.singletonList(tableName));
+        }
     }
 
     @Override
@@ -130,16 +743,131 @@ public class BakiDao extends JdbcSupport implements Baki {
         return query(sql, Args.create());
     }
 
+    /**
+     * {@inheritDoc}<br>
+     * 设置了查询结果缓存并且没有活动的事务时，可以缓存的查询将被全部读取并缓存，返回缓存的结果行的流；
+     * 在事务中并且开启了事务内一级查询缓存时，查询结果缓存在当前事务中；
+     * 设置了从库并且没有活动的事务时，查询在从库中执行
+     *
+     * @see #setResultCache(ResultCache)
+     * @see #setTransactionCacheSize(int)
+     * @see #setReplicas(ReplicaSet)
+     */
     @Override
     public Stream<DataRow> query(String sql, Map<String, Object> args) {
+        Map<String, Object> params = args == null ? Collections.emptyMap() : args;
+        // 缓存的键和查询引用的表以解析后的sql为准（sql文件中的sql，动态sql和${}片段都已展开）
+        String sourceSql = getSourceSql(sql, params);
+        TransactionQueryCache txCache = getTransactionQueryCache();
+        if (txCache != null) {
+            return txCache.get(sourceSql, params, () -> loadQuery(sourceSql, params)).stream();
+        }
+        ResultCache cache = resultCache;
+        if (cache != null && !AbstractTransactionSyncManager.isTransactionActive() && cache.isCacheable(sourceSql)) {
+            // 只有缓存未命中需要查询时才选择从库
+            return cache.get(sourceSql, params, () -> {
+                try (Stream<DataRow> s = routeQuery(() -> loadQuery(sourceSql, params).stream())) {
+                    return s.collect(Collectors.toList());
+                }
+            }).stream();
+        }
+        return routeQuery(() -> doQuery(sourceSql, params));
+    }
+
+    /**
+     * 设置了从库并且没有活动的事务时，选择一个从库执行查询，关闭查询流时释放从库
+     *
+     * @param query 查询
+     * @return 查询结果流
+     */
+    private Stream<DataRow> routeQuery(Supplier<Stream<DataRow>> query) {
+        ReplicaSet replicaSet = replicas;
+        DataSource replica = replicaSet == null || AbstractTransactionSyncManager.isTransactionActive() ? null : replicaSet.acquire();
+        if (replica == null) {
+            return query.get();
+        }
+        routedDataSource.set(replica);
+        try {
+            return query.get().onClose(() -> replicaSet.release(replica));
+        } catch (RuntimeException e) {
+            replicaSet.release(replica);
+            throw e;
+        } finally {
+            routedDataSource.remove();
+        }
+    }
+
+    /**
+     * 查询全部结果行用于缓存，与{@link #doQuery(String, Map)}不同，查询失败时抛出异常，避免将失败的查询作为空结果缓存
+     *
+     * @param sql  解析处理后的查询sql
+     * @param args 参数
+     * @return 全部结果行
+     */
+    private List<DataRow> loadQuery(String sql, Map<String, Object> args) {
+        try (Stream<DataRow> s = executeSourceQueryHandle(sql, args, getFetchSize()).stream()) {
+            return s.collect(Collectors.toList());
+        } catch (SQLTimeoutException ex) {
+            throw new RuntimeException("query [" + sql + "] timeout: ", ex);
+        } catch (SQLException ex) {
+            throw new RuntimeException("query [" + sql + "] error: ", ex);
+        }
+    }
+
+    /**
+     * 执行解析处理后的查询，查询失败时返回空结果
+     *
+     * @param sql  解析处理后的查询sql
+     * @param args 参数
+     * @return 结果行
+     */
+    private Stream<DataRow> doQuery(String sql, Map<String, Object> args) {
         try {
-            return executeQueryStream(sql, args);
+            return executeSourceQueryHandle(sql, args, getFetchSize()).stream();
+        } catch (SQLTimeoutException ex) {
+            throw new RuntimeException("query [" + sql + "] timeout: ", ex);
         } catch (SQLException ex) {
             log.error(ex.toString());
         }
         return Stream.empty();
     }
 
+    @Override
+    public Stream<DataRow> query(String sql, Map<String, Object> args, int fetchSize) {
+        try {
+            return executeQueryStream(sql, args, fetchSize);
+        } catch (SQLTimeoutException ex) {
+            throw new RuntimeException("query [" + sql + "] timeout: ", ex);
+        } catch (SQLException ex) {
+            log.error(ex.toString());
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * 当前线程在事务中时，为保证读取到事务中的数据，不拆分分区，直接在事务连接中执行原查询
+     */
+    @Override
+    public Stream<DataRow> queryParallel(String sql, Map<String, Object> args, String column, int partitions) {
+        if (AbstractTransactionSyncManager.isTransactionActive()) {
+            return query(sql, args);
+        }
+        try {
+            return executeQueryParallel(sql, args, column, partitions);
+        } catch (SQLTimeoutException ex) {
+            throw new RuntimeException("query [" + sql + "] timeout: ", ex);
+        } catch (SQLException ex) {
+            log.error(ex.toString());
+        }
+        return Stream.empty();
+    }
+
+    @Override
+    public Publisher<DataRow> queryPublisher(String sql, Map<String, Object> args) {
+        return executeQueryPublisher(sql, args);
+    }
+
     @Override
     public <T> IPageable<T> query(String recordQuery, int page, int size) {
         return new Pageable<>(this, recordQuery, page, size);
@@ -185,7 +913,71 @@ public class BakiDao extends JdbcSupport implements Baki {
      */
     @Override
     public DataRow call(String name, Map<String, Param> args) {
-        return executeCall(name, args);
+        try {
+            return executeCall(name, args);
+        } finally {
+            afterWrite(null);
+        }
+    }
+
+    /**
+     * 执行存储过程或函数，游标类型的出参以游标方式抓取的惰性流返回<br>
+     * 所有游标流共享同一个连接，全部关闭后才释放：
+     * <blockquote>
+     * <pre>try ({@link Stream}&lt;{@link DataRow}&gt; rows = baki.call("{:res = call test.fun_query()}",
+     *       Args.of("res", Param.OUT(OUTParamType.REF_CURSOR)), 1000).get(0)) {
+     *       rows.forEach(System.out::println);
+     *         }</pre>
+     * </blockquote>
+     *
+     * @param name      过程名
+     * @param args      参数 （占位符名字，参数对象）
+     * @param fetchSize 游标每次抓取行数，0则使用驱动的默认值
+     * @return 包含至少一个结果的DataRow结果集
+     */
+    @Override
+    public DataRow call(String name, Map<String, Param> args, int fetchSize) {
+        try {
+            return executeCall(name, args, fetchSize);
+        } finally {
+            afterWrite(null);
+        }
+    }
+
+    /**
+     * 批量调用只有入参的存储过程，按{@link #getBatchSize()}组为一批执行，
+     * 某一批执行失败时抛出{@link rabbit.sql.support.BatchExecuteException}，包含失败的批次和行
+     *
+     * @param name 过程名
+     * @param args 多组参数 （占位符名字，参数对象）
+     * @return 总的受影响的行数
+     */
+    @Override
+    public int callBatch(String name, Collection<Map<String, Param>> args) {
+        try {
+            return executeCallBatch(name, args);
+        } finally {
+            afterWrite(null);
+        }
+    }
+
+    /**
+     * 流式执行sql脚本文件（UTF-8），脚本逐条读取，不会全部载入内存
+     *
+     * @param path       脚本文件路径
+     * @param commitSize 提交间隔（语句数），小于等于0则不做额外的提交
+     * @return 执行结果统计
+     * @see #executeScript(SqlScriptReader, int)
+     */
+    @Override
+    public ScriptResult executeScript(Path path, int commitSize) {
+        try (SqlScriptReader script = SqlScriptReader.of(path, StandardCharsets.UTF_8)) {
+            return executeScript(script, commitSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("read script [" + path + "] error: ", e);
+        } finally {
+            afterWrite(null);
+        }
     }
 
     @Override
@@ -204,11 +996,10 @@ public class BakiDao extends JdbcSupport implements Baki {
      */
     @Override
     protected String prepareSql(String sql, Map<String, Object> args) {
-        String trimEndedSql = SqlUtil.trimEnd(sql);
         if (sql.startsWith("&")) {
             if (sqlFileManager != null) {
                 try {
-                    trimEndedSql = SqlUtil.trimEnd(sqlFileManager.get(sql.substring(1)));
+                    return sqlFileManager.getTemplate(sql.substring(1)).render(args);
                 } catch (IOException | URISyntaxException e) {
                     log.error("get SQL failed:{}", e.getMessage());
                 }
@@ -216,18 +1007,75 @@ public class BakiDao extends JdbcSupport implements Baki {
                 throw new NullPointerException("can not find property 'sqlPath' or SQLFileManager init failed!");
             }
         }
-        return dynamicSql(trimEndedSql, args);
+        return dynamicSql(SqlUtil.trimEnd(sql), args);
     }
 
+    @Override
+    protected StatementCache getStatementCache(Connection connection) {
+        if (getStatementCacheSize() == 0) {
+            return null;
+        }
+        return DataSourceUtil.getStatementCache(connection, getDataSource(), this::createStatementCache);
+    }
+
+    /**
+     * 获取当前操作的数据源：正在从库中执行的查询为所选的从库，只读事务中为事务绑定的从库，否则为主库
+     *
+     * @return 数据源
+     */
     @Override
     protected DataSource getDataSource() {
+        DataSource routed = routedDataSource.get();
+        if (routed != null) {
+            return routed;
+        }
+        ReplicaSet replicaSet = replicas;
+        if (replicaSet != null && isReadOnlyTransaction()) {
+            for (DataSource replica : replicaSet.getDataSources()) {
+                if (AbstractTransactionSyncManager.getResource(replica) != null) {
+                    return replica;
+                }
+            }
+        }
         return dataSource;
     }
 
+    private static boolean isReadOnlyTransaction() {
+        return AbstractTransactionSyncManager.isTransactionActive() && AbstractTransactionSyncManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * 获取连接对象，只读事务首次获取连接时选择一个从库，事务结束后释放；从库连接获取失败时改为使用主库
+     *
+     * @return 连接对象
+     */
     @Override
     protected Connection getConnection() {
+        DataSource current = getDataSource();
+        ReplicaSet replicaSet = replicas;
+        if (current == dataSource && replicaSet != null && isReadOnlyTransaction() && AbstractTransactionSyncManager.getResource(dataSource) == null) {
+            DataSource replica = replicaSet.acquire();
+            if (replica != null) {
+                try {
+                    Connection connection = DataSourceUtil.getConnection(replica);
+                    AbstractTransactionSyncManager.getResource(replica).addCompletionCallback(() -> replicaSet.release(replica));
+                    return connection;
+                } catch (SQLException e) {
+                    replicaSet.release(replica);
+                    log.warn("fetch replica connection failed, fallback to primary:{}", e.getMessage());
+                }
+            }
+        } else if (current != dataSource && routedDataSource.get() == current) {
+            try {
+                return DataSourceUtil.getConnection(current);
+            } catch (SQLException e) {
+                log.warn("fetch replica connection failed, fallback to primary:{}", e.getMessage());
+                routedDataSource.remove();
+                current = dataSource;
+            }
+        }
         try {
-            return DataSourceUtil.getConnection(dataSource);
+            return DataSourceUtil.getConnection(current);
         } catch (SQLException e) {
             log.error("fetch connection failed:{}", e.getMessage());
             return null;
@@ -5,8 +5,7 @@ import rabbit.sql.support.ICondition;
 import rabbit.sql.support.IFilter;
 import rabbit.sql.utils.SqlUtil;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * SQL条件拼装器
@@ -80,7 +79,17 @@ public class Condition implements ICondition {
      * @return 条件拼接器
      */
     private Condition concatFilterBy(String s, IFilter filter) {
-        if (!IFilter.IGNORE_VALUE.equals(filter.getValue())) {
+        if (filter.getValue() instanceof Collection && (filter.getOperator().equals(Filter.IN) || filter.getOperator().equals(Filter.NOT_IN))) {
+            String name = filter.getField() + SqlUtil.SEP + arg_index++;
+            conditions.append(s).append(SqlUtil.inClause(filter.getField(), filter.getOperator().equals(Filter.NOT_IN), name, (Collection<?>) filter.getValue(), args)).append(" ");
+        } else if (filter.getOperator().equals(Filter.ANY)) {
+            Pair<String, String> sf = getSpecialField(filter.getField());
+            conditions.append(s)
+                    .append(filter.getField())
+                    .append(filter.getOperator())
+                    .append("(").append(sf.getItem2()).append(") ");
+            args.put(sf.getItem1(), filter.getValue());
+        } else if (!IFilter.IGNORE_VALUE.equals(filter.getValue())) {
             Pair<String, String> sf = getSpecialField(filter.getField());
             conditions.append(s)
                     .append(filter.getField())
@@ -2,10 +2,15 @@ package rabbit.sql.dao;
 
 import rabbit.sql.support.IFilter;
 
+import java.util.Collection;
+
 /**
  * 条件过滤器
  */
 public final class Filter implements IFilter {
+    static final String IN = " in ";
+    static final String NOT_IN = " not in ";
+    static final String ANY = " = any";
     private final String operator;    // 操作符
     private final String field;       // 字段名
     private final Object value;       // 字段值
@@ -158,6 +163,55 @@ public final class Filter implements IFilter {
         return of(field, " is null ", IGNORE_VALUE);
     }
 
+    /**
+     * 包含于集合中，集合展开为占位符列表，占位符数量向上取整为2的幂（以最后一个值填充），
+     * 使不同大小的集合只产生对数级别数量的不同sql；超过512个值时拆分为多个以or连接的in子句<br>
+     * e.g. 3个值：{@code id in (:id˞0˞in0, :id˞0˞in1, :id˞0˞in2, :id˞0˞in3)}，{@code :id˞0˞in3}绑定第3个值
+     *
+     * @param field  字段名
+     * @param values 值集合
+     * @return 过滤器
+     */
+    public static Filter in(String field, Collection<?> values) {
+        return of(field, IN, values);
+    }
+
+    /**
+     * 不包含于集合中，展开方式同{@link #in(String, Collection)}
+     *
+     * @param field  字段名
+     * @param values 值集合
+     * @return 过滤器
+     */
+    public static Filter notIn(String field, Collection<?> values) {
+        return of(field, NOT_IN, values);
+    }
+
+    /**
+     * 等于数组中的任意一个值（PostgreSQL），整个集合作为一个数组参数绑定，sql与集合大小无关<br>
+     * e.g. {@code id = any(:id˞0)}
+     *
+     * @param field  字段名
+     * @param values 值集合
+     * @return 过滤器
+     */
+    public static Filter anyOf(String field, Collection<?> values) {
+        return of(field, ANY, values);
+    }
+
+    /**
+     * 包含于表（通常为预先批量写入值的临时表）的某一列中<br>
+     * e.g. {@code id in (select k from tmp_keys)}
+     *
+     * @param field  字段名
+     * @param table  表名
+     * @param column 列名
+     * @return 过滤器
+     */
+    public static Filter inTable(String field, String table, String column) {
+        return of(field, " in (select " + column + " from " + table + ") ", IGNORE_VALUE);
+    }
+
     @Override
     public String getField() {
         return field;
@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rabbit.common.io.ClassPathResource;
 import rabbit.common.utils.ResourceUtil;
+import rabbit.sql.utils.DynamicSqlTemplate;
+import rabbit.sql.utils.SqlUtil;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -13,6 +15,7 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,6 +29,7 @@ public final class SQLFileManager {
     private final ReentrantLock lock = new ReentrantLock();
     private static final Map<String, String> RESOURCE = new HashMap<>();
     private static final Map<String, Long> LAST_MODIFIED = new HashMap<>();
+    private static final Map<String, DynamicSqlTemplate> TEMPLATES = new ConcurrentHashMap<>();
 
     private final String[] paths;
     private boolean checkModified;
@@ -125,6 +129,12 @@ public final class SQLFileManager {
         }
         mergeSqlPartIfNecessary(singleResource, prefix);
         RESOURCE.putAll(singleResource);
+        // 加载时即编译动态sql模版，重新加载后也随之替换
+        singleResource.forEach((k, v) -> {
+            if (!k.startsWith("${")) {
+                TEMPLATES.put(k, DynamicSqlTemplate.compile(SqlUtil.trimEnd(v)));
+            }
+        });
     }
 
     /**
@@ -240,6 +250,26 @@ public final class SQLFileManager {
         throw new NoSuchElementException(String.format("no SQL named [%s] was found.", name));
     }
 
+    /**
+     * 获取一条sql编译后的动态sql模版，模版在sql文件加载时编译
+     *
+     * @param name sql名
+     * @return 动态sql模版
+     * @throws IOException        IOExp
+     * @throws URISyntaxException URIExp
+     * @see DynamicSqlTemplate
+     */
+    public DynamicSqlTemplate getTemplate(String name) throws IOException, URISyntaxException {
+        if (checkModified) {
+            reloadIfNecessary();
+        }
+        DynamicSqlTemplate template = TEMPLATES.get(name);
+        if (template != null) {
+            return template;
+        }
+        throw new NoSuchElementException(String.format("no SQL named [%s] was found.", name));
+    }
+
     /**
      * 是否在每次获取sql时都检查文件是否更新
      *
@@ -25,6 +25,8 @@ public abstract class AbstractTransactionSyncManager {
 
     private static final ThreadLocal<String> currentTransactionName = new NamedThreadLocal<>("Current transaction name");
 
+    private static final ThreadLocal<Long> transactionDeadline = new NamedThreadLocal<>("Transaction deadline");
+
     /**
      * 获取资源
      *
@@ -193,6 +195,15 @@ public abstract class AbstractTransactionSyncManager {
         return currentTransactionIsolationLevel.get();
     }
 
+    /**
+     * 获取当前事务的截止时间
+     *
+     * @return 截止时间（毫秒时间戳），没有设置事务超时时间则为null
+     */
+    public static Long getTransactionDeadline() {
+        return transactionDeadline.get();
+    }
+
     /**
      * 标记事务的定义激活事务
      *
@@ -203,6 +214,11 @@ public abstract class AbstractTransactionSyncManager {
         setCurrentTransactionName(definition.getName());
         setCurrentTransactionReadOnly(definition.isReadOnly());
         setCurrentTransactionIsolationLevel(definition.getLevel());
+        if (definition.getTimeout() > 0) {
+            transactionDeadline.set(System.currentTimeMillis() + definition.getTimeout() * 1000L);
+        } else {
+            transactionDeadline.remove();
+        }
     }
 
     /**
@@ -214,5 +230,6 @@ public abstract class AbstractTransactionSyncManager {
         currentTransactionReadOnly.remove();
         actualTransactionActive.remove();
         currentTransactionName.remove();
+        transactionDeadline.remove();
     }
 }
@@ -1,6 +1,11 @@
 package rabbit.sql.datasource;
 
+import rabbit.sql.cache.StatementCache;
+import rabbit.sql.cache.TransactionQueryCache;
+
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 连接对象持有者
@@ -10,6 +15,9 @@ public class ConnectionHolder {
     private Connection currentConnection;
     private boolean syncWithTransaction = false;
     private int refCount = 0;
+    private StatementCache statementCache;
+    private TransactionQueryCache queryCache;
+    private List<Runnable> completionCallbacks;
 
     /**
      * 构造函数
@@ -97,4 +105,83 @@ public class ConnectionHolder {
     public void clear() {
         refCount = 0;
     }
+
+    /**
+     * 获取当前连接的预编译声明对象缓存
+     *
+     * @return 声明对象缓存，未创建则为null
+     */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * 设置当前连接的预编译声明对象缓存
+     *
+     * @param statementCache 声明对象缓存
+     */
+    public void setStatementCache(StatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * 关闭当前连接缓存的全部声明对象，应在连接释放之前调用
+     */
+    public void clearStatementCache() {
+        if (statementCache != null) {
+            statementCache.close();
+            statementCache = null;
+        }
+    }
+
+    /**
+     * 获取当前事务的一级查询缓存
+     *
+     * @return 查询缓存，未创建则为null
+     */
+    public TransactionQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * 设置当前事务的一级查询缓存
+     *
+     * @param queryCache 查询缓存
+     */
+    public void setQueryCache(TransactionQueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * 丢弃当前事务的一级查询缓存
+     */
+    public void clearQueryCache() {
+        if (queryCache != null) {
+            queryCache.clear();
+            queryCache = null;
+        }
+    }
+
+    /**
+     * 注册一个事务完成（提交或回滚）后执行的回调
+     *
+     * @param callback 回调
+     */
+    public void addCompletionCallback(Runnable callback) {
+        if (completionCallbacks == null) {
+            completionCallbacks = new ArrayList<>();
+        }
+        completionCallbacks.add(callback);
+    }
+
+    /**
+     * 执行并移除全部事务完成的回调，应在连接释放之后调用
+     */
+    public void runCompletionCallbacks() {
+        if (completionCallbacks != null) {
+            List<Runnable> callbacks = completionCallbacks;
+            completionCallbacks = null;
+            callbacks.forEach(Runnable::run);
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package rabbit.sql.datasource;
 
+import rabbit.sql.cache.StatementCache;
+import rabbit.sql.cache.TransactionQueryCache;
 import rabbit.sql.transaction.Definition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.function.Supplier;
 
 /**
  * 数据源工具
@@ -140,6 +143,51 @@ public abstract class DataSourceUtil {
         return (conHolder != null && connectionEquals(conHolder, con));
     }
 
+    /**
+     * 获取事务连接的预编译声明对象缓存，缓存随事务连接一起释放<br>
+     * 非事务连接在每次操作后都会被释放，不使用缓存
+     *
+     * @param con        连接对象
+     * @param dataSource 数据源
+     * @param factory    缓存不存在时创建缓存
+     * @return 声明对象缓存，非事务连接则为null
+     */
+    public static StatementCache getStatementCache(Connection con, DataSource dataSource, Supplier<StatementCache> factory) {
+        if (dataSource == null) {
+            return null;
+        }
+        ConnectionHolder conHolder = AbstractTransactionSyncManager.getResource(dataSource);
+        if (conHolder == null || !conHolder.isSyncWithTransaction() || !connectionEquals(conHolder, con)) {
+            return null;
+        }
+        if (conHolder.getStatementCache() == null) {
+            conHolder.setStatementCache(factory.get());
+        }
+        return conHolder.getStatementCache();
+    }
+
+    /**
+     * 获取事务连接的一级查询缓存，缓存在事务结束后丢弃
+     *
+     * @param con        连接对象
+     * @param dataSource 数据源
+     * @param factory    缓存不存在时创建缓存
+     * @return 查询缓存，非事务连接则为null
+     */
+    public static TransactionQueryCache getQueryCache(Connection con, DataSource dataSource, Supplier<TransactionQueryCache> factory) {
+        if (dataSource == null) {
+            return null;
+        }
+        ConnectionHolder conHolder = AbstractTransactionSyncManager.getResource(dataSource);
+        if (conHolder == null || !conHolder.isSyncWithTransaction() || !connectionEquals(conHolder, con)) {
+            return null;
+        }
+        if (conHolder.getQueryCache() == null) {
+            conHolder.setQueryCache(factory.get());
+        }
+        return conHolder.getQueryCache();
+    }
+
     /**
      * 比较连接对象句柄中的连接对象和当前传入的连接对象是否是同一个
      *
@@ -192,15 +240,18 @@ public abstract class DataSourceUtil {
         }
 
         /**
-         * 事务完成后执行此操作，关闭连接对象并解除资源绑定
+         * 事务完成后执行此操作，丢弃一级查询缓存，关闭连接对象并解除资源绑定，然后执行事务完成的回调
          */
         public void afterCompletion() {
             AbstractTransactionSyncManager.unbindResource(dataSource);
+            connectionHolder.clearQueryCache();
+            connectionHolder.clearStatementCache();
             if (connectionHolder.hasConnection()) {
                 releaseConnectionIfNecessary(connectionHolder.getConnection(), null);
                 connectionHolder.setConnection(null);
             }
             connectionHolder.clear();
+            connectionHolder.runCompletionCallbacks();
         }
     }
 }
@@ -0,0 +1,15 @@
+package rabbit.sql.datasource;
+
+/**
+ * 从库负载均衡策略
+ */
+public enum LoadBalance {
+    /**
+     * 轮询
+     */
+    ROUND_ROBIN,
+    /**
+     * 正在执行的查询数最少
+     */
+    LEAST_IN_FLIGHT
+}
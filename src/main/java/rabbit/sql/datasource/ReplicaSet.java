@@ -0,0 +1,291 @@
+package rabbit.sql.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rabbit.common.types.NamedThreadLocal;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从库数据源集合，为读写分离选择执行查询的从库<br>
+ * 按负载均衡策略在可用的从库中选择，复制延迟超过最大延迟的从库不可用，没有可用的从库时查询在主库执行；
+ * 当前线程在写操作之后的固定时间窗口内查询固定在主库执行，以保证读取到自己写入的数据<br>
+ * 复制延迟由应用定时调用{@link #refreshLag()}通过延迟探测函数更新，或者通过{@link #reportLag(DataSource, long)}直接报告：
+ * <blockquote>
+ * <pre>ReplicaSet replicas = new ReplicaSet(LoadBalance.LEAST_IN_FLIGHT, replica1, replica2);
+ * replicas.setPinWindow(2, TimeUnit.SECONDS);
+ * replicas.setMaxLag(5, TimeUnit.SECONDS);
+ * // PostgreSQL
+ * replicas.setLagProbe(c -&gt; {
+ *     try (Statement s = c.createStatement();
+ *          ResultSet rs = s.executeQuery("select coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0)")) {
+ *         rs.next();
+ *         return rs.getLong(1);
+ *     }
+ * });
+ * scheduler.scheduleWithFixedDelay(replicas::refreshLag, 0, 1, TimeUnit.SECONDS);
+ * baki.setReplicas(replicas);</pre>
+ * </blockquote>
+ */
+public final class ReplicaSet {
+    private final static Logger log = LoggerFactory.getLogger(ReplicaSet.class);
+    private final List<Replica> replicas;
+    private final LoadBalance loadBalance;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<Long> lastWriteTime = new NamedThreadLocal<>("last write time");
+    private volatile long pinWindowMillis = 0;
+    private volatile long maxLagMillis = Long.MAX_VALUE;
+    private volatile LagProbe lagProbe;
+    private volatile Clock clock = Clock.systemUTC();
+
+    /**
+     * 构造函数
+     *
+     * @param loadBalance 负载均衡策略
+     * @param dataSources 从库数据源
+     */
+    public ReplicaSet(LoadBalance loadBalance, DataSource... dataSources) {
+        if (dataSources.length == 0) {
+            throw new IllegalArgumentException("at least one replica data source is required.");
+        }
+        this.loadBalance = loadBalance;
+        List<Replica> list = new ArrayList<>(dataSources.length);
+        for (DataSource dataSource : dataSources) {
+            list.add(new Replica(dataSource));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 设置写操作之后查询固定在主库执行的时间窗口，默认0（不固定）
+     *
+     * @param window 时间窗口
+     * @param unit   时间单位
+     */
+    public void setPinWindow(long window, TimeUnit unit) {
+        this.pinWindowMillis = unit.toMillis(window);
+    }
+
+    /**
+     * 设置从库可用的最大复制延迟，默认不限制
+     *
+     * @param maxLag 最大延迟
+     * @param unit   时间单位
+     */
+    public void setMaxLag(long maxLag, TimeUnit unit) {
+        this.maxLagMillis = unit.toMillis(maxLag);
+    }
+
+    /**
+     * 设置复制延迟探测函数
+     *
+     * @param lagProbe 延迟探测函数
+     * @see #refreshLag()
+     */
+    public void setLagProbe(LagProbe lagProbe) {
+        this.lagProbe = lagProbe;
+    }
+
+    /**
+     * 设置计算写操作之后时间窗口的时钟，默认为系统时钟
+     *
+     * @param clock 时钟
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 通过延迟探测函数更新每个从库的复制延迟，探测失败（例如从库无法连接）的从库标记为不可用，直到下一次探测成功
+     */
+    public void refreshLag() {
+        LagProbe probe = lagProbe;
+        if (probe == null) {
+            return;
+        }
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                replica.lagMillis = probe.lag(connection);
+            } catch (SQLException e) {
+                log.warn("probe replica lag failed: {}", e.getMessage());
+                replica.lagMillis = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * 报告从库的复制延迟
+     *
+     * @param dataSource 从库数据源
+     * @param lagMillis  复制延迟（毫秒），{@link Long#MAX_VALUE}表示不可用
+     */
+    public void reportLag(DataSource dataSource, long lagMillis) {
+        getReplica(dataSource).lagMillis = lagMillis;
+    }
+
+    /**
+     * 获取从库最近一次报告的复制延迟
+     *
+     * @param dataSource 从库数据源
+     * @return 复制延迟（毫秒）
+     */
+    public long getLag(DataSource dataSource) {
+        return getReplica(dataSource).lagMillis;
+    }
+
+    /**
+     * 获取从库正在执行的查询数
+     *
+     * @param dataSource 从库数据源
+     * @return 查询数
+     */
+    public int getInFlight(DataSource dataSource) {
+        return getReplica(dataSource).inFlight.get();
+    }
+
+    /**
+     * 获取全部从库数据源
+     *
+     * @return 从库数据源
+     */
+    public List<DataSource> getDataSources() {
+        List<DataSource> list = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            list.add(replica.dataSource);
+        }
+        return list;
+    }
+
+    /**
+     * 判断数据源是否是集合中的从库
+     *
+     * @param dataSource 数据源
+     * @return 是否是从库
+     */
+    public boolean contains(DataSource dataSource) {
+        for (Replica replica : replicas) {
+            if (replica.dataSource == dataSource) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记录当前线程执行了写操作，时间窗口内当前线程的查询固定在主库执行
+     */
+    public void markWrite() {
+        if (pinWindowMillis > 0) {
+            lastWriteTime.set(clock.millis());
+        }
+    }
+
+    /**
+     * 当前线程是否处于写操作之后的时间窗口内
+     *
+     * @return 是否固定在主库
+     */
+    public boolean isPinned() {
+        Long last = lastWriteTime.get();
+        if (last == null) {
+            return false;
+        }
+        if (clock.millis() - last < pinWindowMillis) {
+            return true;
+        }
+        lastWriteTime.remove();
+        return false;
+    }
+
+    /**
+     * 选择一个可用的从库并将其正在执行的查询数加1，查询结束后必须调用{@link #release(DataSource)}
+     *
+     * @return 从库数据源，当前线程固定在主库或没有可用的从库时为null
+     */
+    public DataSource acquire() {
+        if (isPinned()) {
+            return null;
+        }
+        long maxLag = maxLagMillis;
+        List<Replica> available = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.lagMillis <= maxLag && replica.lagMillis != Long.MAX_VALUE) {
+                available.add(replica);
+            }
+        }
+        if (available.isEmpty()) {
+            log.debug("no replica available, query will be executed on primary.");
+            return null;
+        }
+        Replica selected;
+        if (loadBalance == LoadBalance.LEAST_IN_FLIGHT) {
+            // 从轮询的位置开始比较，正在执行的查询数相同时依次选择
+            int start = Math.floorMod(next.getAndIncrement(), available.size());
+            selected = available.get(start);
+            for (int i = 1; i < available.size(); i++) {
+                Replica replica = available.get((start + i) % available.size());
+                if (replica.inFlight.get() < selected.inFlight.get()) {
+                    selected = replica;
+                }
+            }
+        } else {
+            selected = available.get(Math.floorMod(next.getAndIncrement(), available.size()));
+        }
+        selected.inFlight.incrementAndGet();
+        return selected.dataSource;
+    }
+
+    /**
+     * 查询结束，将从库正在执行的查询数减1
+     *
+     * @param dataSource 从库数据源
+     */
+    public void release(DataSource dataSource) {
+        getReplica(dataSource).inFlight.decrementAndGet();
+    }
+
+    private Replica getReplica(DataSource dataSource) {
+        for (Replica replica : replicas) {
+            if (replica.dataSource == dataSource) {
+                return replica;
+            }
+        }
+        throw new IllegalArgumentException("data source is not a replica of this set: " + dataSource);
+    }
+
+    /**
+     * 复制延迟探测函数
+     */
+    @FunctionalInterface
+    public interface LagProbe {
+        /**
+         * 查询从库的复制延迟
+         *
+         * @param connection 从库连接
+         * @return 复制延迟（毫秒）
+         * @throws SQLException sqlEx
+         */
+        long lag(Connection connection) throws SQLException;
+    }
+
+    /**
+     * 从库状态
+     */
+    private static final class Replica {
+        private final DataSource dataSource;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lagMillis = 0;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package rabbit.sql.support;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量执行失败异常，记录失败的批次，批次包含的行范围，失败的行和失败前已受影响的行数
+ */
+public class BatchExecuteException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final int batchIndex;
+    private final int fromRow;
+    private final int toRow;
+    private final List<Integer> failedRows;
+    private final int affectedRows;
+
+    /**
+     * 构造函数
+     *
+     * @param sql          sql
+     * @param batchIndex   失败的批次序号（从0开始）
+     * @param fromRow      批次的开始行（包含，从0开始）
+     * @param toRow        批次的结束行（不包含）
+     * @param failedRows   失败的行号（从0开始）
+     * @param affectedRows 失败前已受影响的行数
+     * @param cause        批量执行异常，通常为{@link java.sql.BatchUpdateException}
+     */
+    public BatchExecuteException(String sql, int batchIndex, int fromRow, int toRow, List<Integer> failedRows, int affectedRows, SQLException cause) {
+        super("execute batch " + batchIndex + " (rows " + fromRow + " to " + (toRow - 1) + ") of sql [" + sql + "] error, failed rows: " +
+                failedRows + ", " + affectedRows + " rows affected before failure: " + cause.getMessage(), cause);
+        this.batchIndex = batchIndex;
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.failedRows = Collections.unmodifiableList(failedRows);
+        this.affectedRows = affectedRows;
+    }
+
+    /**
+     * 获取失败的批次序号
+     *
+     * @return 批次序号（从0开始）
+     */
+    public int getBatchIndex() {
+        return batchIndex;
+    }
+
+    /**
+     * 获取批次的开始行
+     *
+     * @return 开始行（包含，从0开始）
+     */
+    public int getFromRow() {
+        return fromRow;
+    }
+
+    /**
+     * 获取批次的结束行
+     *
+     * @return 结束行（不包含）
+     */
+    public int getToRow() {
+        return toRow;
+    }
+
+    /**
+     * 获取失败的行号，驱动在第一个错误后停止执行时，只包含第一个失败的行，
+     * 驱动没有提供每行的执行结果时为空
+     *
+     * @return 失败的行号（从0开始）
+     */
+    public List<Integer> getFailedRows() {
+        return failedRows;
+    }
+
+    /**
+     * 获取失败前已受影响的行数（非事务下之前的批次已经提交）
+     *
+     * @return 受影响的行数
+     */
+    public int getAffectedRows() {
+        return affectedRows;
+    }
+}
@@ -0,0 +1,125 @@
+package rabbit.sql.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rabbit.sql.utils.ParamConverter;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译sql的参数绑定计划<br>
+ * 每个参数位置的类名，类型名和值转换器只通过{@link ParameterMetaData}解析一次，
+ * 相同的预编译sql重复执行时不再请求参数元数据
+ *
+ * @see ParamConverter
+ */
+public final class BindingPlan {
+    private final static Logger log = LoggerFactory.getLogger(BindingPlan.class);
+    private final String[] classNames;
+    private final String[] typeNames;
+    private final ParamConverter[] converters;
+
+    private BindingPlan(String[] classNames, String[] typeNames, ParamConverter[] converters) {
+        this.classNames = classNames;
+        this.typeNames = typeNames;
+        this.converters = converters;
+    }
+
+    /**
+     * 根据声明对象的参数元数据创建绑定计划
+     *
+     * @param statement 声明对象
+     * @param count     参数个数
+     * @return 绑定计划
+     */
+    public static BindingPlan of(PreparedStatement statement, int count) {
+        String[] classNames = new String[count];
+        String[] typeNames = new String[count];
+        ParamConverter[] converters = new ParamConverter[count];
+        ParameterMetaData metaData = null;
+        if (count > 0) {
+            try {
+                metaData = statement.getParameterMetaData();
+            } catch (SQLException e) {
+                log.debug("JDBC driver 'getParameterMetaData' method threw exception, use default converter: {}", e.getMessage());
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (metaData != null) {
+                try {
+                    classNames[i] = metaData.getParameterClassName(i + 1);
+                    typeNames[i] = metaData.getParameterTypeName(i + 1);
+                } catch (SQLException e) {
+                    log.debug("resolve parameter {} metadata failed, use default converter: {}", i + 1, e.getMessage());
+                }
+            }
+            converters[i] = ParamConverter.of(classNames[i], typeNames[i]);
+        }
+        return new BindingPlan(classNames, typeNames, converters);
+    }
+
+    /**
+     * 设置一个参数值
+     *
+     * @param statement 声明对象
+     * @param index     序号（从1开始）
+     * @param value     值
+     * @throws SQLException sqlExp
+     */
+    public void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        converters[index - 1].set(statement, index, value, typeNames[index - 1]);
+    }
+
+    /**
+     * 按照参数名的顺序设置全部参数值
+     *
+     * @param statement 声明对象
+     * @param args      参数
+     * @param names     占位符参数名
+     * @throws SQLException sqlExp
+     */
+    public void bind(PreparedStatement statement, Map<String, ?> args, List<String> names) throws SQLException {
+        if (args != null && !args.isEmpty()) {
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                Object value = args.get(name);
+                if (value != null || args.containsKey(name)) {
+                    bind(statement, i + 1, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取参数个数
+     *
+     * @return 参数个数
+     */
+    public int getParameterCount() {
+        return converters.length;
+    }
+
+    /**
+     * 获取参数类名
+     *
+     * @param index 序号（从1开始）
+     * @return 参数类名
+     */
+    public String getParameterClassName(int index) {
+        return classNames[index - 1];
+    }
+
+    /**
+     * 获取参数类型名
+     *
+     * @param index 序号（从1开始）
+     * @return 参数类型名
+     */
+    public String getParameterTypeName(int index) {
+        return typeNames[index - 1];
+    }
+}
@@ -1,19 +1,32 @@
 package rabbit.sql.support;
 
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rabbit.common.tuple.Pair;
 import rabbit.common.types.DataRow;
+import rabbit.common.types.NamedThreadLocal;
 import rabbit.common.types.UncheckedCloseable;
+import rabbit.sql.cache.BoundedCache;
+import rabbit.sql.cache.CacheStats;
+import rabbit.sql.cache.Eviction;
+import rabbit.sql.cache.StatementCache;
+import rabbit.sql.cache.StatsCounter;
+import rabbit.sql.datasource.AbstractTransactionSyncManager;
 import rabbit.sql.types.Param;
 import rabbit.sql.types.ParamMode;
+import rabbit.sql.utils.ColumnReaderPlan;
 import rabbit.sql.utils.JdbcUtil;
+import rabbit.sql.utils.SqlScriptReader;
 import rabbit.sql.utils.SqlUtil;
 
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -36,6 +49,16 @@ import java.util.stream.StreamSupport;
  */
 public abstract class JdbcSupport {
     private final static Logger log = LoggerFactory.getLogger(JdbcSupport.class);
+    private static final ThreadLocal<Long> callDeadline = new NamedThreadLocal<>("call deadline");
+    private volatile BoundedCache<String, Pair<String, List<String>>> preparedSqlCache = new BoundedCache<>(256, Eviction.LRU);
+    private volatile BoundedCache<String, BindingPlan> bindingPlanCache = new BoundedCache<>(256, Eviction.LRU);
+    private volatile Boolean batchUpdatesSupported;
+    private volatile Boolean batchGeneratedKeysSupported;
+    private int batchSize = 1000;
+    private int fetchSize = 0;
+    private int statementCacheSize = 64;
+    private int queryTimeout = 0;
+    private final StatsCounter statementCacheCounter = new StatsCounter();
 
     /**
      * 设置数据源
@@ -76,11 +99,266 @@ public abstract class JdbcSupport {
      * @param args 参数
      * @return 最终要执行的sql
      */
-    private String getSourceSql(String sql, Map<String, Object> args) {
+    protected String getSourceSql(String sql, Map<String, Object> args) {
         String preparedSql = prepareSql(sql, args);
         return SqlUtil.resolveSqlPart(preparedSql, args);
     }
 
+    /**
+     * 获取经过解析处理后的sql，并展开in子句中值为集合的参数
+     *
+     * @param sql  sql
+     * @param args 参数
+     * @return 最终要执行的sql和展开后的参数
+     * @see SqlUtil#expandCollectionArgs(String, Map)
+     */
+    private Pair<String, Map<String, Object>> getSourceSqlAndArgs(String sql, Map<String, Object> args) {
+        return SqlUtil.expandCollectionArgs(getSourceSql(sql, args), args);
+    }
+
+    /**
+     * 获取预编译sql和参数名，相同的源sql只解析一次
+     *
+     * @param sourceSql 最终要执行的源sql
+     * @return 预编译sql和参数名的集合
+     */
+    protected Pair<String, List<String>> getPreparedSql(String sourceSql) {
+        return preparedSqlCache.computeIfAbsent(sourceSql, k -> {
+            Pair<String, List<String>> pair = SqlUtil.getPreparedSql(k);
+            return Pair.of(pair.getItem1(), Collections.unmodifiableList(pair.getItem2()));
+        });
+    }
+
+    /**
+     * 设置预编译sql解析结果的缓存，默认容量256，淘汰策略为LRU，容量为0则禁用缓存
+     *
+     * @param maxSize  最大缓存条目数
+     * @param eviction 淘汰策略
+     */
+    public void setPreparedSqlCache(int maxSize, Eviction eviction) {
+        this.preparedSqlCache = new BoundedCache<>(maxSize, eviction);
+    }
+
+    /**
+     * 获取预编译sql解析结果缓存的统计信息
+     *
+     * @return 缓存统计信息
+     */
+    public CacheStats getPreparedSqlCacheStats() {
+        return preparedSqlCache.stats();
+    }
+
+    /**
+     * 获取预编译sql的参数绑定计划，相同的预编译sql只解析一次参数元数据
+     *
+     * @param preparedSql 预编译sql
+     * @param statement   声明对象
+     * @param argNames    占位符参数名
+     * @return 参数绑定计划
+     */
+    protected BindingPlan getBindingPlan(String preparedSql, PreparedStatement statement, List<String> argNames) {
+        return bindingPlanCache.computeIfAbsent(preparedSql, k -> BindingPlan.of(statement, argNames.size()));
+    }
+
+    /**
+     * 设置预编译sql参数绑定计划的缓存，默认容量256，淘汰策略为LRU，容量为0则禁用缓存
+     *
+     * @param maxSize  最大缓存条目数
+     * @param eviction 淘汰策略
+     */
+    public void setBindingPlanCache(int maxSize, Eviction eviction) {
+        this.bindingPlanCache = new BoundedCache<>(maxSize, eviction);
+    }
+
+    /**
+     * 获取预编译sql参数绑定计划缓存的统计信息
+     *
+     * @return 缓存统计信息
+     */
+    public CacheStats getBindingPlanCacheStats() {
+        return bindingPlanCache.stats();
+    }
+
+    /**
+     * 设置批量执行的每批行数，默认1000，小于2则每行单独执行
+     *
+     * @param batchSize 每批行数
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 获取批量执行的每批行数
+     *
+     * @return 每批行数
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 设置流查询默认的每次抓取行数，默认0（使用驱动的默认值，例如PostgreSQL将一次性缓冲全部结果）
+     *
+     * @param fetchSize 每次抓取行数
+     * @see #executeQueryStream(String, Map, int)
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 获取流查询默认的每次抓取行数
+     *
+     * @return 每次抓取行数
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * 设置默认的执行超时时间（秒），默认0，不超时
+     *
+     * @param queryTimeout 超时时间（秒）
+     * @see #withTimeout(int, Supplier)
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        if (queryTimeout < 0) {
+            throw new IllegalArgumentException("query timeout must not be negative: " + queryTimeout);
+        }
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * 获取默认的执行超时时间（秒）
+     *
+     * @return 超时时间（秒）
+     */
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * 在指定的时间内执行操作，操作中执行的每条语句的超时时间为剩余的时间，
+     * 到期后的语句将不再执行并抛出{@link SQLTimeoutException}<br>
+     * 可以嵌套，嵌套时以最早的截止时间为准，也与事务的截止时间（{@link rabbit.sql.transaction.Definition#setTimeout(int)}）同时生效：
+     * <blockquote>
+     * <pre>baki.withTimeout(5, () -&gt; baki.fetch("select ..."));</pre>
+     * </blockquote>
+     *
+     * @param seconds 时间（秒）
+     * @param action  操作
+     * @param <T>     类型参数
+     * @return 操作结果
+     */
+    public <T> T withTimeout(int seconds, Supplier<T> action) {
+        Long previous = callDeadline.get();
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+        callDeadline.set(previous == null ? deadline : Math.min(previous, deadline));
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                callDeadline.remove();
+            } else {
+                callDeadline.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 为将要执行的声明对象设置超时时间，取默认超时时间和截止时间（{@link #withTimeout(int, Supplier)}或事务）剩余时间中较小的值
+     *
+     * @param statement 声明对象
+     * @return 是否设置了超时时间，缓存的声明对象放回前需要重置
+     * @throws SQLTimeoutException 已经超过截止时间
+     * @throws SQLException        sqlEx
+     */
+    protected boolean applyQueryTimeout(Statement statement) throws SQLException {
+        int timeout = queryTimeout;
+        Long deadline = callDeadline.get();
+        Long txDeadline = AbstractTransactionSyncManager.getTransactionDeadline();
+        if (deadline == null || txDeadline != null && txDeadline < deadline) {
+            deadline = txDeadline;
+        }
+        if (deadline != null) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new SQLTimeoutException("deadline exceeded " + (-remaining) + "ms ago, statement will not be executed.");
+            }
+            int remainingSeconds = (int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000);
+            timeout = timeout > 0 ? Math.min(timeout, remainingSeconds) : remainingSeconds;
+        }
+        if (timeout > 0) {
+            statement.setQueryTimeout(timeout);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 设置事务中每个连接最多缓存的预编译声明对象数，默认64，为0则禁用缓存<br>
+     * 在同一个事务中重复执行相同的sql时将复用声明对象，避免每次重新预编译
+     *
+     * @param statementCacheSize 每个连接最多缓存的声明对象数
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("statement cache size must not be negative: " + statementCacheSize);
+        }
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * 获取每个连接最多缓存的预编译声明对象数
+     *
+     * @return 声明对象数
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * 获取全部连接的预编译声明对象缓存汇总的统计信息，条目数和容量为单个连接的缓存
+     *
+     * @return 缓存统计信息
+     */
+    public CacheStats getStatementCacheStats() {
+        return statementCacheCounter.snapshot(0, statementCacheSize);
+    }
+
+    /**
+     * 创建一个连接的预编译声明对象缓存
+     *
+     * @return 声明对象缓存
+     */
+    protected StatementCache createStatementCache() {
+        return new StatementCache(statementCacheSize, statementCacheCounter);
+    }
+
+    /**
+     * 获取连接的预编译声明对象缓存，默认不缓存，实现类可以为持有时间较长的连接（例如事务中的连接）提供缓存
+     *
+     * @param connection 连接对象
+     * @return 声明对象缓存，不缓存则为null
+     */
+    protected StatementCache getStatementCache(Connection connection) {
+        return null;
+    }
+
+    /**
+     * 判断驱动是否支持批量执行，只检查一次
+     *
+     * @param connection 连接对象
+     * @return 是否支持
+     */
+    protected boolean supportsBatchUpdates(Connection connection) {
+        if (batchUpdatesSupported == null) {
+            batchUpdatesSupported = JdbcUtil.supportsBatchUpdates(connection);
+        }
+        return batchUpdatesSupported;
+    }
+
     /**
      * 执行一句sql
      *
@@ -92,13 +370,20 @@ public abstract class JdbcSupport {
     public <T> T execute(final String sql, StatementCallback<T> callback) {
         PreparedStatement statement = null;
         Connection connection = getConnection();
+        StatementCache statementCache = getStatementCache(connection);
         try {
-            statement = connection.prepareStatement(sql);
-            return callback.doInStatement(statement);
+            statement = statementCache == null ? connection.prepareStatement(sql) : statementCache.checkout(connection, sql);
+            boolean timed = applyQueryTimeout(statement);
+            T result = callback.doInStatement(statement);
+            if (statementCache != null) {
+                if (timed) {
+                    statement.setQueryTimeout(0);
+                }
+                statementCache.checkin(sql, statement);
+                statement = null;
+            }
+            return result;
         } catch (SQLException e) {
-            JdbcUtil.closeStatement(statement);
-            statement = null;
-            releaseConnection(connection, getDataSource());
             throw new RuntimeException("execute sql [" + sql + "] error: ", e);
         } finally {
             JdbcUtil.closeStatement(statement);
@@ -116,19 +401,24 @@ public abstract class JdbcSupport {
     public DataRow executeAny(final String sql, Map<String, Object> args) {
         String sourceSql = sql;
         boolean hasArgs = args != null && !args.isEmpty();
+        final Map<String, Object> bindArgs;
         if (hasArgs) {
-            sourceSql = getSourceSql(sql, args);
+            Pair<String, Map<String, Object>> sourceSqlAndArgs = getSourceSqlAndArgs(sql, args);
+            sourceSql = sourceSqlAndArgs.getItem1();
+            bindArgs = sourceSqlAndArgs.getItem2();
+        } else {
+            bindArgs = args;
         }
         log.debug("SQL:{}", sourceSql);
         log.debug("Args:{}", args);
 
-        Pair<String, List<String>> preparedSqlAndArgNames = SqlUtil.getPreparedSql(sourceSql);
+        Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(sourceSql);
         final List<String> argNames = preparedSqlAndArgNames.getItem2();
         final String preparedSql = preparedSqlAndArgNames.getItem1();
 
         return execute(preparedSql, sc -> {
             if (hasArgs) {
-                JdbcUtil.setSqlArgs(sc, args, argNames);
+                getBindingPlan(preparedSql, sc, argNames).bind(sc, bindArgs, argNames);
             }
             boolean isQuery = sc.execute();
             DataRow result;
@@ -149,6 +439,132 @@ public abstract class JdbcSupport {
         });
     }
 
+    /**
+     * 执行可能返回多个结果的sql（例如存储过程，多语句批处理），按数据库返回的顺序惰性读取每一个结果<br>
+     * 外层流的每个元素对应一个结果：结果集为逐行读取的查询流，更新数量则为只包含一行
+     * （{@code result}, {@code type}，同{@link #executeAny(String, Map)}）的流；
+     * 同一时刻只有当前结果驻留内存，外层流前进时上一个结果集将被关闭，所以内层流必须在外层流前进之前消费完<br>
+     * 使用完请务必关闭外层流，否则将一直占用连接对象直到连接池耗尽：
+     * <blockquote>
+     * <pre>try ({@link Stream}&lt;{@link Stream}&lt;{@link DataRow}&gt;&gt; results = ...) {
+     *       results.forEach(rows -&gt; rows.forEach(System.out::println));
+     *         }</pre>
+     * </blockquote>
+     *
+     * @param sql  sql
+     * @param args 参数
+     * @return 结果流的流
+     * @throws SQLException sqlEx
+     */
+    public Stream<Stream<DataRow>> executeMultiResults(final String sql, Map<String, Object> args) throws SQLException {
+        UncheckedCloseable close = null;
+        try {
+            if (args == null) {
+                args = Collections.emptyMap();
+            }
+            log.debug("Args:{}", args);
+            Pair<String, Map<String, Object>> sourceSqlAndArgs = getSourceSqlAndArgs(sql, args);
+            String sourceSql = sourceSqlAndArgs.getItem1();
+            args = sourceSqlAndArgs.getItem2();
+            log.debug("SQL:{}", sourceSql);
+
+            Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(sourceSql);
+            final List<String> argNames = preparedSqlAndArgNames.getItem2();
+            final String preparedSql = preparedSqlAndArgNames.getItem1();
+
+            Connection connection = getConnection();
+            // 关闭时的数据源可能已经不同（例如从库路由已结束），获取连接时记录
+            DataSource dataSource = getDataSource();
+            close = () -> releaseConnection(connection, dataSource);
+            PreparedStatement statement = connection.prepareStatement(preparedSql);
+            close = close.nest(statement);
+            if (fetchSize != 0) {
+                statement.setFetchSize(fetchSize);
+            }
+            applyQueryTimeout(statement);
+            if (!args.isEmpty()) {
+                getBindingPlan(preparedSql, statement, argNames).bind(statement, args, argNames);
+            }
+            final boolean firstIsQuery = statement.execute();
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<Stream<DataRow>>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                boolean first = true;
+                boolean finished = false;
+
+                @Override
+                public boolean tryAdvance(Consumer<? super Stream<DataRow>> action) {
+                    if (finished) {
+                        return false;
+                    }
+                    try {
+                        boolean isQuery;
+                        if (first) {
+                            first = false;
+                            isQuery = firstIsQuery;
+                        } else {
+                            // 默认关闭当前结果集并移动到下一个结果
+                            isQuery = statement.getMoreResults();
+                        }
+                        if (isQuery) {
+                            action.accept(resultSetStream(statement.getResultSet(), preparedSql));
+                            return true;
+                        }
+                        int count = statement.getUpdateCount();
+                        if (count == -1) {
+                            finished = true;
+                            return false;
+                        }
+                        if (count == 0) {
+                            action.accept(Stream.of(DataRow.fromPair("result", 0, "type", "DDL statement")));
+                        } else {
+                            action.accept(Stream.of(DataRow.fromPair("result", count, "type", "DML statement")));
+                        }
+                        return true;
+                    } catch (SQLException ex) {
+                        throw new RuntimeException("read results of [" + preparedSql + "] error: ", ex);
+                    }
+                }
+            }, false).onClose(close);
+        } catch (SQLException sqlEx) {
+            if (close != null) {
+                try {
+                    close.close();
+                } catch (Exception e) {
+                    sqlEx.addSuppressed(e);
+                }
+            }
+            throw sqlEx;
+        }
+    }
+
+    /**
+     * 逐行读取结果集的流，结果集的关闭由所属的声明对象负责
+     *
+     * @param resultSet 结果集
+     * @param sql       sql
+     * @return 行数据流
+     */
+    private static Stream<DataRow> resultSetStream(ResultSet resultSet, String sql) {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<DataRow>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            ColumnReaderPlan plan = null;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super DataRow> action) {
+                try {
+                    if (resultSet.isClosed() || !resultSet.next()) {
+                        return false;
+                    }
+                    if (plan == null) {
+                        plan = ColumnReaderPlan.of(resultSet, sql);
+                    }
+                    action.accept(plan.read(resultSet));
+                    return true;
+                } catch (SQLException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }, false);
+    }
+
     /**
      * 惰性执行一句查询，只有调用终端操作和短路操作才会真正开始执行<br>
      * 使用完请务必关闭流，否则将一直占用连接对象直到连接池耗尽<br>
@@ -163,30 +579,102 @@ public abstract class JdbcSupport {
      * @param args 参数 （占位符名字，参数对象）
      * @return Stream数据流
      * @throws SQLException sqlEx
+     * @see #setFetchSize(int)
      */
     public Stream<DataRow> executeQueryStream(final String sql, Map<String, Object> args) throws SQLException {
+        return executeQueryStream(sql, args, fetchSize);
+    }
+
+    /**
+     * 以游标方式惰性执行一句查询，结果集为只进只读，每次只从数据库抓取指定的行数，
+     * 内存占用与结果集大小无关<br>
+     * 抓取行数大于0并且连接为自动提交（不在事务中）时，为满足PostgreSQL游标抓取的要求，
+     * 连接将暂时关闭自动提交，关闭流时恢复<br>
+     * 使用完请务必关闭流，否则将一直占用连接对象直到连接池耗尽
+     *
+     * @param sql       e.g. <code>select * from test.user where id = :id</code>
+     * @param args      参数 （占位符名字，参数对象）
+     * @param fetchSize 每次抓取行数，0则使用驱动的默认值（MySQL可使用{@link Integer#MIN_VALUE}开启逐行流式读取）
+     * @return Stream数据流
+     * @throws SQLException sqlEx
+     */
+    public Stream<DataRow> executeQueryStream(final String sql, Map<String, Object> args, int fetchSize) throws SQLException {
+        return executeQueryHandle(sql, args, fetchSize).stream();
+    }
+
+    /**
+     * 以游标方式惰性执行一句查询，返回可以在其他线程中取消查询的句柄
+     *
+     * @param sql       e.g. <code>select * from test.user where id = :id</code>
+     * @param args      参数 （占位符名字，参数对象）
+     * @param fetchSize 每次抓取行数，0则使用驱动的默认值
+     * @return 查询句柄
+     * @throws SQLException sqlEx
+     * @see #executeQueryStream(String, Map, int)
+     */
+    public QueryHandle executeQueryHandle(final String sql, Map<String, Object> args, int fetchSize) throws SQLException {
+        if (args == null) {
+            args = Collections.emptyMap();
+        }
+        return executeSourceQueryHandle(getSourceSql(sql, args), args, fetchSize);
+    }
+
+    /**
+     * 以游标方式惰性执行一句已经过解析处理（{@link #prepareSql(String, Map)}和sql片段解析）的查询，不再重复解析
+     *
+     * @param sourceSql 解析处理后的sql
+     * @param args      参数 （占位符名字，参数对象）
+     * @param fetchSize 每次抓取行数，0则使用驱动的默认值
+     * @return 查询句柄
+     * @throws SQLException sqlEx
+     */
+    protected QueryHandle executeSourceQueryHandle(final String sourceSql, Map<String, Object> args, int fetchSize) throws SQLException {
         UncheckedCloseable close = null;
         try {
-            if (args == null) {
-                args = Collections.emptyMap();
-            }
-            String sourceSql = getSourceSql(sql, args);
-            log.debug("SQL:{}", sourceSql);
             log.debug("Args:{}", args);
+            Pair<String, Map<String, Object>> sourceSqlAndArgs = SqlUtil.expandCollectionArgs(sourceSql, args);
+            String expandedSql = sourceSqlAndArgs.getItem1();
+            args = sourceSqlAndArgs.getItem2();
+            log.debug("SQL:{}", expandedSql);
 
-            Pair<String, List<String>> preparedSqlAndArgNames = SqlUtil.getPreparedSql(sourceSql);
+            Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(expandedSql);
             final List<String> argNames = preparedSqlAndArgNames.getItem2();
             final String preparedSql = preparedSqlAndArgNames.getItem1();
 
             Connection connection = getConnection();
-            close = UncheckedCloseable.wrap(connection);
-            PreparedStatement statement = connection.prepareStatement(preparedSql);
-            JdbcUtil.setSqlArgs(statement, args, argNames);
-            close = close.nest(statement);
+            DataSource dataSource = getDataSource();
+            close = () -> releaseConnection(connection, dataSource);
+            if (fetchSize > 0 && connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+                close = close.nest(() -> connection.setAutoCommit(true));
+            }
+            StatementCache statementCache = getStatementCache(connection);
+            PreparedStatement statement;
+            if (statementCache == null) {
+                statement = connection.prepareStatement(preparedSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                close = close.nest(statement);
+                if (fetchSize != 0) {
+                    statement.setFetchSize(fetchSize);
+                }
+                applyQueryTimeout(statement);
+            } else {
+                statement = statementCache.checkout(connection, preparedSql);
+                close = close.nest(() -> statementCache.checkin(preparedSql, statement));
+                // 缓存的声明对象需要重置上一次使用的抓取行数
+                if (fetchSize != 0 || statement.getFetchSize() != 0) {
+                    statement.setFetchSize(fetchSize);
+                }
+                if (applyQueryTimeout(statement)) {
+                    close = close.nest(() -> statement.setQueryTimeout(0));
+                }
+            }
+            QueryHandle handle = new QueryHandle(statement);
+            close = close.nest(handle::markClosed);
+            getBindingPlan(preparedSql, statement, argNames).bind(statement, args, argNames);
             ResultSet resultSet = statement.executeQuery();
             close = close.nest(resultSet);
-            return StreamSupport.stream(new Spliterators.AbstractSpliterator<DataRow>(Long.MAX_VALUE, Spliterator.ORDERED) {
-                String[] names = null;
+            handle.attach(StreamSupport.stream(new Spliterators.AbstractSpliterator<DataRow>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                ColumnReaderPlan plan = null;
 
                 @Override
                 public boolean tryAdvance(Consumer<? super DataRow> action) {
@@ -194,16 +682,20 @@ public abstract class JdbcSupport {
                         if (!resultSet.next()) {
                             return false;
                         }
-                        if (names == null) {
-                            names = JdbcUtil.createNames(resultSet, preparedSql);
+                        if (plan == null) {
+                            plan = ColumnReaderPlan.of(resultSet, preparedSql);
                         }
-                        action.accept(JdbcUtil.createDataRow(names, resultSet));
+                        action.accept(plan.read(resultSet));
                         return true;
                     } catch (SQLException ex) {
+                        if (handle.isCancelled()) {
+                            throw new RuntimeException("query [" + preparedSql + "] was cancelled: ", ex);
+                        }
                         throw new RuntimeException(ex);
                     }
                 }
-            }, false).onClose(close);
+            }, false).onClose(close));
+            return handle;
         } catch (SQLException sqlEx) {
             if (close != null) {
                 try {
@@ -216,8 +708,145 @@ public abstract class JdbcSupport {
         }
     }
 
+    /**
+     * 以支持背压的发布者执行一句查询，在调用{@link org.reactivestreams.Subscription#request(long)}的线程中读取结果集
+     *
+     * @param sql  查询sql
+     * @param args 参数
+     * @return 查询结果发布者
+     * @see #executeQueryPublisher(String, Map, int, Executor)
+     */
+    public Publisher<DataRow> executeQueryPublisher(final String sql, Map<String, Object> args) {
+        return executeQueryPublisher(sql, args, fetchSize, Runnable::run);
+    }
+
+    /**
+     * 以支持背压的发布者执行一句查询<br>
+     * 每次订阅执行一次查询，按订阅者请求的数量逐行发送，结果集以游标方式抓取，
+     * 完成，出错或取消时释放连接，查询的异常通过{@link org.reactivestreams.Subscriber#onError(Throwable)}通知
+     *
+     * @param sql       查询sql
+     * @param args      参数
+     * @param fetchSize 每次抓取行数，小于等于0则使用订阅者首次请求的数量
+     * @param executor  读取结果集并发送数据的线程池
+     * @return 查询结果发布者
+     * @see QueryPublisher
+     */
+    public Publisher<DataRow> executeQueryPublisher(final String sql, Map<String, Object> args, int fetchSize, Executor executor) {
+        return new QueryPublisher(size -> {
+            try {
+                return executeQueryStream(sql, args, size);
+            } catch (SQLException e) {
+                throw new RuntimeException("execute query [" + sql + "] error: ", e);
+            }
+        }, fetchSize, executor);
+    }
+
+    /**
+     * 按分区列的值范围将查询拆分为多个分区并行执行，分区列的上下界通过查询最小值和最大值得到
+     *
+     * @param sql        查询sql
+     * @param args       参数
+     * @param column     分区列（数字或时间类型）
+     * @param partitions 分区数
+     * @return 可并行的Stream数据流
+     * @throws SQLException sqlEx
+     * @see #executeQueryParallel(String, Map, String, int, Object, Object)
+     */
+    public Stream<DataRow> executeQueryParallel(final String sql, Map<String, Object> args, String column, int partitions) throws SQLException {
+        return executeQueryParallel(sql, args, column, partitions, null, null);
+    }
+
+    /**
+     * 按分区列的值范围将查询拆分为多个分区并行执行<br>
+     * 上下界之间平均分为多个区间，每个区间包装为一句独立的查询：
+     * <blockquote>
+     * <pre>select * from (查询sql) t where column {@code >=} :partition_lower and column {@code <} :partition_upper</pre>
+     * </blockquote>
+     * 第一个分区没有下界，最后一个分区没有上界，分区列为null的行单独作为一个分区，所以上下界只影响分区的均匀程度，不会遗漏数据<br>
+     * 返回的流拆分时每个分区在各自的线程中使用独立的连接查询，使用{@link Stream#parallel()}即可在fork-join线程池中并行读取，
+     * 使用完请务必关闭流
+     *
+     * @param sql        查询sql
+     * @param args       参数
+     * @param column     分区列（数字或时间类型）
+     * @param partitions 分区数
+     * @param lower      分区列的下界，为null则查询最小值
+     * @param upper      分区列的上界，为null则查询最大值
+     * @return 可并行的Stream数据流
+     * @throws SQLException sqlEx
+     */
+    public Stream<DataRow> executeQueryParallel(final String sql, Map<String, Object> args, String column, int partitions, Object lower, Object upper) throws SQLException {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be greater than 0.");
+        }
+        if (args == null) {
+            args = Collections.emptyMap();
+        }
+        String sourceSql = SqlUtil.trimEnd(getSourceSql(sql, args));
+        if (lower == null || upper == null) {
+            // sql已经解析处理过，包装后的查询不再重复解析
+            try (Stream<DataRow> s = executeSourceQueryHandle("select min(" + column + ") as min_value, max(" + column + ") as max_value from (\n" + sourceSql + "\n) t", args, fetchSize).stream()) {
+                DataRow range = s.findFirst().orElseThrow(() -> new NoSuchElementException("no result of partition range query."));
+                lower = lower == null ? range.get(0) : lower;
+                upper = upper == null ? range.get(1) : upper;
+            }
+        }
+        String rangeSql = "select * from (\n" + sourceSql + "\n) t where ";
+        List<Supplier<Stream<DataRow>>> parts = new ArrayList<>();
+        if (lower != null && upper != null) {
+            List<Object> bounds = JdbcUtil.splitRange(lower, upper, partitions);
+            if (bounds.size() < 2) {
+                parts.add(partition(rangeSql + column + " is not null", args, null, null));
+            } else {
+                for (int i = 0; i < bounds.size() - 1; i++) {
+                    Object lo = i == 0 ? null : bounds.get(i);
+                    Object hi = i == bounds.size() - 2 ? null : bounds.get(i + 1);
+                    String cnd;
+                    if (lo == null && hi == null) {
+                        cnd = column + " is not null";
+                    } else if (lo == null) {
+                        cnd = column + " < :partition_upper";
+                    } else if (hi == null) {
+                        cnd = column + " >= :partition_lower";
+                    } else {
+                        cnd = column + " >= :partition_lower and " + column + " < :partition_upper";
+                    }
+                    parts.add(partition(rangeSql + cnd, args, lo, hi));
+                }
+            }
+        }
+        parts.add(partition(rangeSql + column + " is null", args, null, null));
+        log.debug("Parallel query partitions: {}, column: {}, lower: {}, upper: {}", parts.size(), column, lower, upper);
+        PartitionSpliterator spliterator = new PartitionSpliterator(parts);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * 创建一个分区的惰性查询
+     *
+     * @param sql   分区查询sql（已解析处理）
+     * @param args  参数
+     * @param lower 分区下界
+     * @param upper 分区上界
+     * @return 分区查询流
+     */
+    private Supplier<Stream<DataRow>> partition(String sql, Map<String, Object> args, Object lower, Object upper) {
+        Map<String, Object> partitionArgs = new HashMap<>(args);
+        partitionArgs.put("partition_lower", lower);
+        partitionArgs.put("partition_upper", upper);
+        return () -> {
+            try {
+                return executeSourceQueryHandle(sql, partitionArgs, fetchSize).stream();
+            } catch (SQLException e) {
+                throw new RuntimeException("execute partition query [" + sql + "] error: ", e);
+            }
+        };
+    }
+
     /**
      * 执行一句非查询语句(insert，update，delete)<br>
+     * 多组参数并且驱动支持时，以{@link #getBatchSize()}行为一批批量执行，否则逐行执行<br>
      * e.g.
      * <blockquote>
      * <pre>insert into table (a,b,c) values (:v1,:v2,:v3)</pre>
@@ -226,27 +855,42 @@ public abstract class JdbcSupport {
      * @param sql  sql
      * @param args 数据
      * @return 总的受影响的行数
+     * @throws BatchExecuteException 批量执行中的某一批执行失败
      */
     public int executeNonQuery(final String sql, final Collection<Map<String, Object>> args) {
         String sourceSql = sql;
         boolean hasArgs = args != null && !args.isEmpty();
+        Collection<Map<String, Object>> data = args;
         if (hasArgs) {
             Map<String, Object> firstArg = args.stream().findFirst().get();
-            sourceSql = getSourceSql(sql, firstArg);
+            if (args.size() == 1) {
+                // 批量执行的每组参数共用一条sql，只有单组参数时才展开集合参数
+                Pair<String, Map<String, Object>> sourceSqlAndArgs = getSourceSqlAndArgs(sql, firstArg);
+                sourceSql = sourceSqlAndArgs.getItem1();
+                data = Collections.singletonList(sourceSqlAndArgs.getItem2());
+            } else {
+                sourceSql = getSourceSql(sql, firstArg);
+            }
         }
+        final Collection<Map<String, Object>> rows = data;
         log.debug("SQL:{}", sourceSql);
         log.debug("Args:{}", args);
 
-        Pair<String, List<String>> preparedSqlAndArgNames = SqlUtil.getPreparedSql(sourceSql);
+        Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(sourceSql);
         final List<String> argNames = preparedSqlAndArgNames.getItem2();
         final String preparedSql = preparedSqlAndArgNames.getItem1();
 
         return execute(preparedSql, sc -> {
             int i = 0;
             if (hasArgs) {
-                for (Map<String, Object> arg : args) {
-                    JdbcUtil.setSqlArgs(sc, arg, argNames);
-                    i += sc.executeUpdate();
+                BindingPlan plan = getBindingPlan(preparedSql, sc, argNames);
+                if (rows.size() > 1 && batchSize > 1 && supportsBatchUpdates(sc.getConnection())) {
+                    i = executeBatch(sc, preparedSql, plan, rows, argNames, null);
+                } else {
+                    for (Map<String, Object> arg : rows) {
+                        plan.bind(sc, arg, argNames);
+                        i += sc.executeUpdate();
+                    }
                 }
             } else {
                 i = sc.executeUpdate();
@@ -256,6 +900,296 @@ public abstract class JdbcSupport {
         });
     }
 
+    /**
+     * 执行插入语句并按数据的顺序返回数据库生成的键<br>
+     * 多组参数并且驱动支持时，以{@link #getBatchSize()}行为一批批量执行，每批执行后读取该批生成的键，否则逐行执行；
+     * PostgreSQL等驱动通过在语句后追加{@code RETURNING}实现，Oracle需要指定键的列名，否则返回的是{@code ROWID}
+     *
+     * @param sql        e.g. <code>insert into table (a,b) values (:a,:b)</code>
+     * @param args       数据
+     * @param keyColumns 生成键的列名，为空则由驱动决定返回的列
+     * @return 每行数据生成的键，顺序与数据的顺序一致
+     * @throws BatchExecuteException 批量执行中的某一批执行失败
+     * @throws IllegalStateException 驱动返回的键的数量与数据行数不一致，无法保证键的顺序
+     */
+    public List<DataRow> executeNonQueryReturningKeys(final String sql, final Collection<Map<String, Object>> args, String... keyColumns) {
+        final Collection<Map<String, Object>> data = args == null || args.isEmpty() ? Collections.singletonList(Collections.emptyMap()) : args;
+        String sourceSql = getSourceSql(sql, data.iterator().next());
+        log.debug("SQL:{}", sourceSql);
+        log.debug("Args:{}", args);
+
+        Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(sourceSql);
+        final List<String> argNames = preparedSqlAndArgNames.getItem2();
+        final String preparedSql = preparedSqlAndArgNames.getItem1();
+
+        PreparedStatement sc = null;
+        Connection connection = getConnection();
+        try {
+            if (keyColumns != null && keyColumns.length > 0) {
+                sc = connection.prepareStatement(preparedSql, keyColumns);
+            } else {
+                sc = connection.prepareStatement(preparedSql, Statement.RETURN_GENERATED_KEYS);
+            }
+            applyQueryTimeout(sc);
+            BindingPlan plan = getBindingPlan(preparedSql, sc, argNames);
+            List<DataRow> keys = new ArrayList<>(data.size());
+            StatementCallback<?> readKeys = s -> {
+                try (ResultSet resultSet = s.getGeneratedKeys()) {
+                    ColumnReaderPlan readerPlan = null;
+                    while (resultSet.next()) {
+                        if (readerPlan == null) {
+                            readerPlan = ColumnReaderPlan.of(resultSet, preparedSql);
+                        }
+                        keys.add(readerPlan.read(resultSet));
+                    }
+                }
+                return null;
+            };
+            if (data.size() > 1 && batchSize > 1 && supportsBatchUpdates(connection) && supportsBatchGeneratedKeys(connection)) {
+                executeBatch(sc, preparedSql, plan, data, argNames, readKeys);
+            } else {
+                for (Map<String, Object> arg : data) {
+                    plan.bind(sc, arg, argNames);
+                    sc.executeUpdate();
+                    readKeys.doInStatement(sc);
+                }
+            }
+            if (keys.size() != data.size()) {
+                throw new IllegalStateException("driver returned " + keys.size() + " generated keys for " + data.size() + " rows of sql [" + preparedSql + "], key order can not be guaranteed.");
+            }
+            return keys;
+        } catch (SQLException e) {
+            throw new RuntimeException("execute sql [" + preparedSql + "] error: ", e);
+        } finally {
+            JdbcUtil.closeStatement(sc);
+            releaseConnection(connection, getDataSource());
+        }
+    }
+
+    /**
+     * 判断驱动是否支持批量执行后返回整批数据生成的键，只检查一次，不支持时将逐行执行
+     *
+     * @param connection 连接对象
+     * @return 是否支持
+     * @see JdbcUtil#supportsBatchGeneratedKeys(Connection)
+     */
+    protected boolean supportsBatchGeneratedKeys(Connection connection) {
+        if (batchGeneratedKeysSupported == null) {
+            batchGeneratedKeysSupported = JdbcUtil.supportsBatchGeneratedKeys(connection);
+        }
+        return batchGeneratedKeysSupported;
+    }
+
+    /**
+     * 按批次执行预编译语句
+     *
+     * @param sc          声明对象
+     * @param preparedSql 预编译sql
+     * @param plan        参数绑定计划
+     * @param args        数据
+     * @param argNames    占位符参数名
+     * @param afterBatch  每批执行成功后的回调，可为null
+     * @return 总的受影响的行数
+     * @throws BatchExecuteException 某一批执行失败
+     * @throws SQLException          sqlEx
+     */
+    protected int executeBatch(PreparedStatement sc, String preparedSql, BindingPlan plan, Collection<Map<String, Object>> args, List<String> argNames, StatementCallback<?> afterBatch) throws SQLException {
+        int total = 0;
+        int batchIndex = 0;
+        int row = 0;
+        int batchRows = 0;
+        for (Map<String, Object> arg : args) {
+            plan.bind(sc, arg, argNames);
+            sc.addBatch();
+            row++;
+            if (++batchRows == batchSize || row == args.size()) {
+                try {
+                    total += JdbcUtil.sumUpdateCounts(sc.executeBatch());
+                } catch (SQLException e) {
+                    int from = row - batchRows;
+                    List<Integer> failedRows = Collections.emptyList();
+                    int affected = total;
+                    // 部分驱动（例如SQLite）抛出的不是BatchUpdateException，无法得知失败的行
+                    if (e instanceof BatchUpdateException) {
+                        BatchUpdateException be = (BatchUpdateException) e;
+                        failedRows = JdbcUtil.getFailedRows(be, from, batchRows);
+                        affected += be.getUpdateCounts() == null ? 0 : JdbcUtil.sumUpdateCounts(be.getUpdateCounts());
+                    }
+                    throw new BatchExecuteException(preparedSql, batchIndex, from, row, failedRows, affected, e);
+                }
+                log.debug("batch {} executed, {} rows.", batchIndex, batchRows);
+                if (afterBatch != null) {
+                    afterBatch.doInStatement(sc);
+                }
+                sc.clearBatch();
+                batchIndex++;
+                batchRows = 0;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 流式执行sql脚本，脚本逐条读取，不会全部载入内存<br>
+     * 驱动支持时，连续的非查询语句以{@link #getBatchSize()}条为一批通过{@link Statement#addBatch(String)}批量执行，
+     * 查询语句单独执行并忽略结果；连接为自动提交（不在事务中）并且提交间隔大于0时，每执行至少指定条数的语句提交一次，
+     * 出错时回滚未提交的部分，在事务中执行时由事务负责提交：
+     * <blockquote>
+     * <pre>try ({@link SqlScriptReader} script = SqlScriptReader.of(path, StandardCharsets.UTF_8)) {
+     *       ScriptResult result = executeScript(script, 10000);
+     *         }</pre>
+     * </blockquote>
+     *
+     * @param script     sql脚本读取器
+     * @param commitSize 提交间隔（语句数），小于等于0则不做额外的提交
+     * @return 执行结果统计
+     * @throws BatchExecuteException 某一批或某一条语句执行失败，行号为语句在脚本中的序号（从0开始），单独执行的语句失败时批次序号为-1
+     */
+    public ScriptResult executeScript(SqlScriptReader script, int commitSize) {
+        long start = System.currentTimeMillis();
+        Connection connection = getConnection();
+        Statement statement = null;
+        boolean manageCommit = false;
+        List<String> pending = new ArrayList<>();
+        int index = 0;
+        int batches = 0;
+        int commits = 0;
+        int uncommitted = 0;
+        long affected = 0;
+        try {
+            manageCommit = commitSize > 0 && connection.getAutoCommit();
+            if (manageCommit) {
+                connection.setAutoCommit(false);
+            }
+            statement = connection.createStatement();
+            applyQueryTimeout(statement);
+            boolean batch = batchSize > 1 && supportsBatchUpdates(connection);
+            while (script.hasNext()) {
+                String sql = script.next();
+                if (batch && !isQueryStatement(sql)) {
+                    statement.addBatch(sql);
+                    pending.add(sql);
+                    if (pending.size() == batchSize) {
+                        affected += executeScriptBatch(statement, pending, index - pending.size() + 1, batches++, affected);
+                    }
+                } else {
+                    if (!pending.isEmpty()) {
+                        affected += executeScriptBatch(statement, pending, index - pending.size(), batches++, affected);
+                    }
+                    try {
+                        if (!statement.execute(sql)) {
+                            affected += Math.max(statement.getUpdateCount(), 0);
+                        }
+                    } catch (SQLException e) {
+                        throw new BatchExecuteException(sql, -1, index, index + 1, Collections.singletonList(index), (int) affected, e);
+                    }
+                }
+                index++;
+                if (manageCommit && ++uncommitted >= commitSize) {
+                    if (!pending.isEmpty()) {
+                        affected += executeScriptBatch(statement, pending, index - pending.size(), batches++, affected);
+                    }
+                    connection.commit();
+                    commits++;
+                    uncommitted = 0;
+                }
+            }
+            if (!pending.isEmpty()) {
+                affected += executeScriptBatch(statement, pending, index - pending.size(), batches++, affected);
+            }
+            if (manageCommit && uncommitted > 0) {
+                connection.commit();
+                commits++;
+            }
+            ScriptResult result = new ScriptResult(index, batches, commits, affected, System.currentTimeMillis() - start);
+            log.debug("script executed: {}", result);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            if (manageCommit) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    e.addSuppressed(ex);
+                }
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException("execute script error at statement " + index + ": ", e);
+        } finally {
+            if (manageCommit) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    log.warn("restore auto commit failed: {}", e.getMessage());
+                }
+            }
+            JdbcUtil.closeStatement(statement);
+            releaseConnection(connection, getDataSource());
+        }
+    }
+
+    /**
+     * 执行脚本中累积的一批语句并清空
+     *
+     * @param statement  声明对象
+     * @param pending    当前批次的语句
+     * @param from       批次第一条语句的序号
+     * @param batchIndex 批次序号
+     * @param affected   之前已受影响的行数
+     * @return 本批次受影响的行数
+     * @throws SQLException sqlEx
+     */
+    private int executeScriptBatch(Statement statement, List<String> pending, int from, int batchIndex, long affected) throws SQLException {
+        int size = pending.size();
+        try {
+            int count = JdbcUtil.sumUpdateCounts(statement.executeBatch());
+            log.debug("script batch {} executed, {} statements.", batchIndex, size);
+            return count;
+        } catch (SQLException e) {
+            List<Integer> failedRows = Collections.emptyList();
+            String sql = pending.get(0);
+            if (e instanceof BatchUpdateException) {
+                failedRows = JdbcUtil.getFailedRows((BatchUpdateException) e, from, size);
+                if (!failedRows.isEmpty()) {
+                    sql = pending.get(failedRows.get(0) - from);
+                }
+            }
+            throw new BatchExecuteException(sql, batchIndex, from, from + size, failedRows, (int) affected, e);
+        } finally {
+            statement.clearBatch();
+            pending.clear();
+        }
+    }
+
+    /**
+     * 判断脚本中的语句是否可能返回结果集，返回结果集的语句不能加入批量执行
+     *
+     * @param sql sql
+     * @return 是否是查询语句
+     */
+    private static boolean isQueryStatement(String sql) {
+        int end = 0;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        String keyword = sql.substring(0, end).toLowerCase();
+        switch (keyword) {
+            case "select":
+            case "with":
+            case "show":
+            case "explain":
+            case "desc":
+            case "describe":
+            case "pragma":
+            case "call":
+            case "values":
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /**
      * 执行存储过程或函数<br>
      * 所有出参结果都放入到{@link DataRow}中，可通过命名参数名来取得，或者通过索引来取，索引从0开始<br>
@@ -283,7 +1217,7 @@ public abstract class JdbcSupport {
         log.debug("Procedure:{}", sourceSql);
         log.debug("Args:{}", args);
 
-        Pair<String, List<String>> preparedSqlAndArgNames = SqlUtil.getPreparedSql(sourceSql);
+        Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(sourceSql);
         final String executeSql = preparedSqlAndArgNames.getItem1();
         final List<String> argNames = preparedSqlAndArgNames.getItem2();
 
@@ -292,6 +1226,7 @@ public abstract class JdbcSupport {
         try {
             if (hasArgs) {
                 statement = connection.prepareCall(executeSql);
+                applyQueryTimeout(statement);
                 JdbcUtil.setStoreArgs(statement, args, argNames);
                 statement.execute();
 
@@ -339,4 +1274,196 @@ public abstract class JdbcSupport {
             releaseConnection(connection, getDataSource());
         }
     }
+
+    /**
+     * 执行存储过程或函数，游标类型的出参（例如PostgreSQL的{@code refcursor}）不再一次性读取为{@link List}，
+     * 而是作为以游标方式抓取的惰性{@link Stream}&lt;{@link DataRow}&gt;放入结果中，其他出参同{@link #executeCall(String, Map)}<br>
+     * 所有游标流共享同一个声明对象和连接，全部关闭后才释放连接；若没有游标类型的出参，则执行完立即释放<br>
+     * 参数中有{@link java.sql.Types#REF_CURSOR}类型的出参并且连接为自动提交（不在事务中）时，
+     * 为保证游标在读取期间有效，连接将暂时关闭自动提交，释放时恢复：
+     * <blockquote>
+     * <pre>DataRow row = executeCall("{call test.func2(:c::refcursor)}", args, 1000);
+     *try ({@link Stream}&lt;{@link DataRow}&gt; stream = row.get("c")) {
+     *       stream.forEach(System.out::println);
+     *         }</pre>
+     * </blockquote>
+     *
+     * @param procedure 存储过程名
+     * @param args      参数
+     * @param fetchSize 游标每次抓取行数，0则使用驱动的默认值
+     * @return DataRow
+     */
+    public DataRow executeCall(final String procedure, Map<String, Param> args, int fetchSize) {
+        String sourceSql = procedure;
+        boolean hasArgs = args != null && !args.isEmpty();
+        if (hasArgs) {
+            Map<String, Object> pArgs = new HashMap<>();
+            args.forEach((k, v) -> pArgs.put(k, v.getValue()));
+            sourceSql = getSourceSql(procedure, pArgs);
+        }
+        log.debug("Procedure:{}", sourceSql);
+        log.debug("Args:{}", args);
+
+        Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(sourceSql);
+        final String executeSql = preparedSqlAndArgNames.getItem1();
+        final List<String> argNames = preparedSqlAndArgNames.getItem2();
+
+        UncheckedCloseable close = null;
+        try {
+            Connection connection = getConnection();
+            DataSource dataSource = getDataSource();
+            close = () -> releaseConnection(connection, dataSource);
+            if (hasArgs && hasCursorOutParam(args) && connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+                close = close.nest(() -> connection.setAutoCommit(true));
+            }
+            CallableStatement statement = connection.prepareCall(executeSql);
+            close = close.nest(statement);
+            applyQueryTimeout(statement);
+            if (hasArgs) {
+                JdbcUtil.setStoreArgs(statement, args, argNames);
+            }
+            statement.execute();
+
+            List<String> outNames = new ArrayList<>();
+            List<Object> values = new ArrayList<>();
+            List<String> types = new ArrayList<>();
+            int cursorCount = 0;
+            if (hasArgs) {
+                for (int i = 0; i < argNames.size(); i++) {
+                    ParamMode mode = args.get(argNames.get(i)).getParamMode();
+                    if (mode == ParamMode.OUT || mode == ParamMode.IN_OUT) {
+                        outNames.add(argNames.get(i));
+                        Object result = statement.getObject(i + 1);
+                        if (result instanceof ResultSet) {
+                            ResultSet cursor = (ResultSet) result;
+                            if (fetchSize != 0) {
+                                cursor.setFetchSize(fetchSize);
+                            }
+                            cursorCount++;
+                        }
+                        values.add(result);
+                        types.add(result == null ? null : result.getClass().getName());
+                    }
+                }
+            }
+            if (cursorCount == 0) {
+                close.run();
+            } else {
+                // 最后一个游标流关闭时释放声明对象和连接
+                final UncheckedCloseable release = close;
+                final AtomicInteger remaining = new AtomicInteger(cursorCount);
+                for (int i = 0; i < values.size(); i++) {
+                    if (values.get(i) instanceof ResultSet) {
+                        ResultSet cursor = (ResultSet) values.get(i);
+                        UncheckedCloseable cursorClose = () -> {
+                            if (remaining.decrementAndGet() == 0) {
+                                release.close();
+                            }
+                        };
+                        values.set(i, resultSetStream(cursor, executeSql).onClose(cursorClose.nest(cursor)));
+                        types.set(i, "java.util.stream.Stream<DataRow>");
+                        log.debug("boxing a result with type: cursor, convert to Stream<DataRow>, get result by name:{} or index:{}!", outNames.get(i), i);
+                    }
+                }
+            }
+            if (outNames.isEmpty()) {
+                return DataRow.empty();
+            }
+            return DataRow.of(outNames.toArray(new String[0]), types.toArray(new String[0]), values.toArray());
+        } catch (SQLException e) {
+            RuntimeException ex = new RuntimeException("execute procedure [" + procedure + "] error:", e);
+            if (close != null) {
+                try {
+                    close.close();
+                } catch (Exception ce) {
+                    ex.addSuppressed(ce);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * 判断参数中是否有游标类型的出参
+     *
+     * @param args 参数
+     * @return 是否有游标出参
+     */
+    private static boolean hasCursorOutParam(Map<String, Param> args) {
+        for (Param param : args.values()) {
+            if (param.getParamMode() != ParamMode.IN && param.getType() != null && param.getType().getTypeNumber() == Types.REF_CURSOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 以同一组参数结构批量调用只有入参的存储过程，存储过程只解析和预编译一次<br>
+     * 多组参数并且驱动支持时，以{@link #getBatchSize()}组为一批通过{@link CallableStatement#addBatch()}批量执行，否则逐组执行：
+     * <blockquote>
+     * <pre>executeCallBatch("{call test.add_user(:id, :name)}", argsList);</pre>
+     * </blockquote>
+     *
+     * @param procedure 存储过程名
+     * @param args      多组参数，参数模式必须都为{@link ParamMode#IN}
+     * @return 总的受影响的行数（驱动未返回时为0）
+     * @throws BatchExecuteException 某一批（逐组执行时为某一组）执行失败
+     * @throws IllegalArgumentException 参数为空或包含出参
+     */
+    public int executeCallBatch(final String procedure, Collection<Map<String, Param>> args) {
+        if (args == null || args.isEmpty()) {
+            throw new IllegalArgumentException("batch call args must not be empty.");
+        }
+        List<Map<String, Object>> values = new ArrayList<>(args.size());
+        for (Map<String, Param> arg : args) {
+            Map<String, Object> value = new HashMap<>();
+            arg.forEach((k, v) -> {
+                if (v.getParamMode() != ParamMode.IN) {
+                    throw new IllegalArgumentException("batch call only supports IN param, but param [" + k + "] is " + v.getParamMode() + ".");
+                }
+                value.put(k, v.getValue());
+            });
+            values.add(value);
+        }
+        String sourceSql = getSourceSql(procedure, values.get(0));
+        log.debug("Procedure:{}", sourceSql);
+        log.debug("Args:{}", args);
+
+        Pair<String, List<String>> preparedSqlAndArgNames = getPreparedSql(sourceSql);
+        final String executeSql = preparedSqlAndArgNames.getItem1();
+        final List<String> argNames = preparedSqlAndArgNames.getItem2();
+
+        CallableStatement statement = null;
+        Connection connection = getConnection();
+        try {
+            statement = connection.prepareCall(executeSql);
+            applyQueryTimeout(statement);
+            BindingPlan plan = getBindingPlan(executeSql, statement, argNames);
+            int total = 0;
+            if (values.size() > 1 && batchSize > 1 && supportsBatchUpdates(connection)) {
+                total = executeBatch(statement, executeSql, plan, values, argNames, null);
+            } else {
+                int row = 0;
+                for (Map<String, Object> value : values) {
+                    plan.bind(statement, value, argNames);
+                    try {
+                        statement.execute();
+                    } catch (SQLException e) {
+                        throw new BatchExecuteException(executeSql, row, row, row + 1, Collections.singletonList(row), total, e);
+                    }
+                    total += Math.max(statement.getUpdateCount(), 0);
+                    row++;
+                }
+            }
+            log.debug("{} calls executed, {} rows updated!", values.size(), total);
+            return total;
+        } catch (SQLException e) {
+            throw new RuntimeException("execute batch procedure [" + procedure + "] error:", e);
+        } finally {
+            JdbcUtil.closeStatement(statement);
+            releaseConnection(connection, getDataSource());
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package rabbit.sql.support;
+
+import rabbit.common.types.DataRow;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 分区查询的可拆分迭代器<br>
+ * 每个分区是一个独立的惰性查询流，迭代器按分区对半拆分，拆分后的每一部分在各自的线程中打开自己的查询（连接），
+ * 一个分区开始读取后不再拆分
+ */
+final class PartitionSpliterator implements Spliterator<DataRow> {
+    private final List<Supplier<Stream<DataRow>>> partitions;
+    private final Queue<Stream<DataRow>> opened;
+    private int from;
+    private final int to;
+    private Stream<DataRow> current;
+    private Iterator<DataRow> iterator;
+
+    /**
+     * 构造函数
+     *
+     * @param partitions 每个分区的查询流
+     */
+    PartitionSpliterator(List<Supplier<Stream<DataRow>>> partitions) {
+        this(partitions, new ConcurrentLinkedQueue<>(), 0, partitions.size());
+    }
+
+    private PartitionSpliterator(List<Supplier<Stream<DataRow>>> partitions, Queue<Stream<DataRow>> opened, int from, int to) {
+        this.partitions = partitions;
+        this.opened = opened;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super DataRow> action) {
+        while (true) {
+            if (iterator == null) {
+                if (from >= to) {
+                    return false;
+                }
+                current = partitions.get(from++).get();
+                opened.add(current);
+                iterator = current.iterator();
+            }
+            if (iterator.hasNext()) {
+                action.accept(iterator.next());
+                return true;
+            }
+            closeCurrent();
+        }
+    }
+
+    @Override
+    public Spliterator<DataRow> trySplit() {
+        if (iterator != null || to - from < 2) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        PartitionSpliterator prefix = new PartitionSpliterator(partitions, opened, from, mid);
+        from = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return iterator == null && from >= to ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * 关闭当前已读完的分区，立即释放其连接
+     */
+    private void closeCurrent() {
+        Stream<DataRow> stream = current;
+        current = null;
+        iterator = null;
+        opened.remove(stream);
+        stream.close();
+    }
+
+    /**
+     * 关闭所有拆分出的迭代器中还未读完的分区
+     */
+    void close() {
+        RuntimeException ex = null;
+        Stream<DataRow> stream;
+        while ((stream = opened.poll()) != null) {
+            try {
+                stream.close();
+            } catch (RuntimeException e) {
+                if (ex == null) {
+                    ex = e;
+                } else {
+                    ex.addSuppressed(e);
+                }
+            }
+        }
+        if (ex != null) {
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package rabbit.sql.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rabbit.common.types.DataRow;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Stream;
+
+/**
+ * 正在执行的查询句柄，持有惰性查询流和执行查询的声明对象<br>
+ * 可以在任意线程中调用{@link #cancel()}取消正在执行或正在读取的查询，取消后读取流将抛出异常，
+ * 仍需关闭句柄（或流）以释放连接：
+ * <blockquote>
+ * <pre>try ({@link QueryHandle} handle = ...) {
+ *       scheduler.schedule(handle::cancel, 30, TimeUnit.SECONDS);
+ *       handle.stream().forEach(System.out::println);
+ *         }</pre>
+ * </blockquote>
+ */
+public final class QueryHandle implements AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(QueryHandle.class);
+    private final Statement statement;
+    private Stream<DataRow> stream;
+    private volatile boolean cancelled;
+    private boolean closed;
+
+    /**
+     * 构造函数
+     *
+     * @param statement 执行查询的声明对象
+     */
+    QueryHandle(Statement statement) {
+        this.statement = statement;
+    }
+
+    /**
+     * 绑定查询流
+     *
+     * @param stream 查询流
+     */
+    void attach(Stream<DataRow> stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * 获取查询流
+     *
+     * @return 查询流
+     */
+    public Stream<DataRow> stream() {
+        return stream;
+    }
+
+    /**
+     * 取消查询，已关闭的查询不做任何操作（声明对象可能已被其他操作复用）
+     */
+    public synchronized void cancel() {
+        if (closed || cancelled) {
+            return;
+        }
+        cancelled = true;
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            log.warn("cancel query failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 查询是否已被取消
+     *
+     * @return 是否已取消
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 标记查询已关闭，在释放声明对象之前调用
+     */
+    synchronized void markClosed() {
+        closed = true;
+    }
+
+    /**
+     * 关闭查询流并释放连接
+     */
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
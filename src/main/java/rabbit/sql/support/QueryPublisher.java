@@ -0,0 +1,184 @@
+package rabbit.sql.support;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rabbit.common.types.DataRow;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * 支持背压的查询结果发布者<br>
+ * 每次订阅独立执行一次查询，直到订阅者第一次请求数据时才获取连接，之后按照订阅者请求的数量逐行读取结果集并发送，
+ * 结果集以游标方式抓取，除请求的数量外最多只缓冲一个抓取批次；完成，出错或取消时立即释放连接<br>
+ * 在JDK9+中可以通过{@code org.reactivestreams.FlowAdapters#toFlowPublisher}转换为{@code java.util.concurrent.Flow.Publisher}
+ */
+public final class QueryPublisher implements Publisher<DataRow> {
+    /**
+     * 未指定抓取行数时，抓取行数取首次请求的数量，但不超过此值
+     */
+    private static final int MAX_DEMAND_FETCH_SIZE = 1000;
+    private final IntFunction<Stream<DataRow>> query;
+    private final int fetchSize;
+    private final Executor executor;
+
+    /**
+     * 构造函数
+     *
+     * @param query     根据抓取行数打开查询流的函数
+     * @param fetchSize 每次抓取行数，小于等于0则使用首次请求的数量
+     * @param executor  读取结果集并发送数据的线程池，{@code Runnable::run}则在调用{@link Subscription#request(long)}的线程中执行
+     */
+    public QueryPublisher(IntFunction<Stream<DataRow>> query, int fetchSize, Executor executor) {
+        this.query = query;
+        this.fetchSize = fetchSize;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super DataRow> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber must not be null.");
+        QuerySubscription subscription = new QuerySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * 一次订阅，所有的结果集读取和信号发送都在同一时刻只有一个线程执行的drain循环中进行
+     */
+    private final class QuerySubscription implements Subscription {
+        private final Subscriber<? super DataRow> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+        private Stream<DataRow> stream;
+        private Iterator<DataRow> iterator;
+
+        QuerySubscription(Subscriber<? super DataRow> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request must be positive (rule 3.9), but was: " + n);
+            } else {
+                long current, next;
+                do {
+                    current = demand.get();
+                    if (current == Long.MAX_VALUE) {
+                        break;
+                    }
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!demand.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (Throwable e) {
+                    cancelled = true;
+                    closeStream();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (done) {
+                    return;
+                }
+                if (cancelled) {
+                    done = true;
+                    closeStream();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    error(invalidRequest);
+                    return;
+                }
+                long requested = demand.get();
+                long emitted = 0;
+                try {
+                    if (requested > 0 && iterator == null) {
+                        stream = query.apply(fetchSize > 0 ? fetchSize : (int) Math.min(requested, MAX_DEMAND_FETCH_SIZE));
+                        iterator = stream.iterator();
+                    }
+                    while (emitted != requested) {
+                        if (cancelled) {
+                            done = true;
+                            closeStream();
+                            return;
+                        }
+                        if (!iterator.hasNext()) {
+                            complete();
+                            return;
+                        }
+                        subscriber.onNext(iterator.next());
+                        emitted++;
+                    }
+                    // 请求的数据已发送完，若结果集恰好结束则立即完成，不等待下一次请求
+                    if (iterator != null && !cancelled && !iterator.hasNext()) {
+                        complete();
+                        return;
+                    }
+                } catch (Throwable e) {
+                    if (!done) {
+                        error(e);
+                    }
+                    return;
+                }
+                if (emitted > 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void complete() {
+            done = true;
+            closeStream();
+            subscriber.onComplete();
+        }
+
+        private void error(Throwable e) {
+            done = true;
+            try {
+                closeStream();
+            } catch (Throwable ex) {
+                e.addSuppressed(ex);
+            }
+            subscriber.onError(e);
+        }
+
+        private void closeStream() {
+            if (stream != null) {
+                Stream<DataRow> s = stream;
+                stream = null;
+                iterator = null;
+                s.close();
+            }
+        }
+    }
+}
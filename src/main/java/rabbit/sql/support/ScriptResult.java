@@ -0,0 +1,86 @@
+package rabbit.sql.support;
+
+/**
+ * sql脚本执行结果统计
+ */
+public final class ScriptResult {
+    private final int statements;
+    private final int batches;
+    private final int commits;
+    private final long affectedRows;
+    private final long elapsedMillis;
+
+    ScriptResult(int statements, int batches, int commits, long affectedRows, long elapsedMillis) {
+        this.statements = statements;
+        this.batches = batches;
+        this.commits = commits;
+        this.affectedRows = affectedRows;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 获取执行的语句数
+     *
+     * @return 语句数
+     */
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * 获取批量执行的批次数
+     *
+     * @return 批次数
+     */
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * 获取提交次数，在事务中执行或连接不是自动提交时为0
+     *
+     * @return 提交次数
+     */
+    public int getCommits() {
+        return commits;
+    }
+
+    /**
+     * 获取驱动返回的总的受影响的行数
+     *
+     * @return 受影响的行数
+     */
+    public long getAffectedRows() {
+        return affectedRows;
+    }
+
+    /**
+     * 获取执行耗时
+     *
+     * @return 耗时（毫秒）
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 获取吞吐量
+     *
+     * @return 每秒执行的语句数
+     */
+    public double getStatementsPerSecond() {
+        return elapsedMillis == 0 ? statements * 1000.0 : statements * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptResult{" +
+                "statements=" + statements +
+                ", batches=" + batches +
+                ", commits=" + commits +
+                ", affectedRows=" + affectedRows +
+                ", elapsedMillis=" + elapsedMillis +
+                ", statementsPerSecond=" + String.format("%.1f", getStatementsPerSecond()) +
+                '}';
+    }
+}
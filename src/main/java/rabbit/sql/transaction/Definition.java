@@ -7,6 +7,7 @@ public final class Definition {
     private String name;
     private boolean readOnly;
     private Level level = Level.READ_COMMITTED;
+    private int timeout;
 
     public void setName(String name) {
         this.name = name;
@@ -20,6 +21,16 @@ public final class Definition {
         this.level = level;
     }
 
+    /**
+     * 设置事务的超时时间（秒），事务中的每条语句的超时时间为事务剩余的时间，
+     * 超过截止时间后的语句将不再执行，默认0，不超时
+     *
+     * @param timeout 超时时间（秒）
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
     public String getName() {
         return name;
     }
@@ -32,6 +43,10 @@ public final class Definition {
         return level.getValue();
     }
 
+    public int getTimeout() {
+        return timeout;
+    }
+
     /**
      * 默认的事务级别
      *
@@ -14,6 +14,8 @@ public class DataFrame {
     private final Collection<Map<String, Object>> rows;
     private boolean strict = true;
     private Ignore ignore;
+    private int multiValues;
+    private boolean staging;
 
     /**
      * 构造函数
@@ -85,6 +87,48 @@ public class DataFrame {
         return this;
     }
 
+    /**
+     * 设置多行插入模式，将多行数据合并为一条 {@code insert into t (a,b) values (...),(...),...} 语句插入<br>
+     * 每条语句的实际行数不会超过数据库的绑定参数数量限制，对于不支持此语法的数据库（如Oracle）则以普通的批量插入执行
+     *
+     * @param maxRows 每条语句最多包含的行数，小于2则不启用
+     * @return DataFrame
+     */
+    public DataFrame multiValues(int maxRows) {
+        this.multiValues = maxRows;
+        return this;
+    }
+
+    /**
+     * 设置合并（upsert）时是否通过临时表执行：数据先批量插入到临时表，再以一条基于集合的语句合并到目标表，
+     * 适用于大量数据的合并，不支持临时表方式的数据库（如Oracle）则以普通的批量合并执行
+     *
+     * @param staging 是否通过临时表合并
+     * @return DataFrame
+     */
+    public DataFrame staging(boolean staging) {
+        this.staging = staging;
+        return this;
+    }
+
+    /**
+     * 合并（upsert）时是否通过临时表执行
+     *
+     * @return 是否通过临时表合并
+     */
+    public boolean isStaging() {
+        return staging;
+    }
+
+    /**
+     * 获取多行插入模式下每条语句最多包含的行数
+     *
+     * @return 最多行数，小于2表示未启用
+     */
+    public int getMultiValues() {
+        return multiValues;
+    }
+
     /**
      * 获取行数据
      *
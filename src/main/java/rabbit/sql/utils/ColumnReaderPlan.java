@@ -0,0 +1,170 @@
+package rabbit.sql.utils;
+
+import rabbit.common.types.DataRow;
+
+import java.sql.*;
+
+/**
+ * 结果集的列读取计划<br>
+ * 根据{@link ResultSetMetaData}为每一列预先选择合适的读取器，并缓存列名和列类名，
+ * 逐行读取时不再请求结果集元数据，也不再对每个值做多余的类型判断
+ */
+public final class ColumnReaderPlan {
+    private final String[] names;
+    private final String[] columnClassNames;
+    private final ColumnReader[] readers;
+
+    private ColumnReaderPlan(String[] names, String[] columnClassNames, ColumnReader[] readers) {
+        this.names = names;
+        this.columnClassNames = columnClassNames;
+        this.readers = readers;
+    }
+
+    /**
+     * 根据结果集元数据创建列读取计划
+     *
+     * @param resultSet   结果集
+     * @param executedSql 将要执行的原生sql
+     * @return 列读取计划
+     * @throws SQLException sqlEx
+     */
+    public static ColumnReaderPlan of(ResultSet resultSet, String executedSql) throws SQLException {
+        String[] names = JdbcUtil.createNames(resultSet, executedSql);
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        String[] columnClassNames = new String[names.length];
+        ColumnReader[] readers = new ColumnReader[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columnClassNames[i] = metaData.getColumnClassName(i + 1);
+            readers[i] = ColumnReader.of(metaData.getColumnType(i + 1), columnClassNames[i]);
+        }
+        return new ColumnReaderPlan(names, columnClassNames, readers);
+    }
+
+    /**
+     * 读取结果集当前行
+     *
+     * @param resultSet 结果集
+     * @return 数据行
+     * @throws SQLException sqlEx
+     */
+    public DataRow read(ResultSet resultSet) throws SQLException {
+        String[] types = new String[names.length];
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Object value = readers[i].read(resultSet, i + 1, columnClassNames[i]);
+            values[i] = value;
+            types[i] = value == null ? columnClassNames[i] : value.getClass().getTypeName();
+        }
+        return DataRow.of(names, types, values);
+    }
+
+    /**
+     * 获取表头名
+     *
+     * @return 表头名
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * 列读取器
+     */
+    enum ColumnReader {
+        /**
+         * 基本类型（数字，字符串，布尔等），直接获取值
+         */
+        OBJECT {
+            @Override
+            Object read(ResultSet resultSet, int index, String columnClassName) throws SQLException {
+                return resultSet.getObject(index);
+            }
+        },
+        /**
+         * 时间戳类型，包括Oracle的TIMESTAMP
+         */
+        TIMESTAMP {
+            @Override
+            Object read(ResultSet resultSet, int index, String columnClassName) throws SQLException {
+                return resultSet.getTimestamp(index);
+            }
+        },
+        /**
+         * 大对象类型，Blob转为字节数组，Clob转为字符串
+         */
+        LOB {
+            @Override
+            Object read(ResultSet resultSet, int index, String columnClassName) throws SQLException {
+                Object obj = resultSet.getObject(index);
+                if (obj instanceof Blob) {
+                    return JdbcUtil.getBytes((Blob) obj);
+                }
+                if (obj instanceof Clob) {
+                    Clob clob = (Clob) obj;
+                    return clob.getSubString(0, (int) clob.length());
+                }
+                return obj;
+            }
+        },
+        /**
+         * 数组类型，PostgreSQL数组转为java数组
+         */
+        ARRAY {
+            @Override
+            Object read(ResultSet resultSet, int index, String columnClassName) throws SQLException {
+                Object obj = resultSet.getObject(index);
+                if (obj != null && "org.postgresql.jdbc.PgArray".equals(obj.getClass().getName())) {
+                    return ((Array) obj).getArray();
+                }
+                return obj;
+            }
+        },
+        /**
+         * 其他类型，按照值的实际类型做必要的转换
+         */
+        GENERIC {
+            @Override
+            Object read(ResultSet resultSet, int index, String columnClassName) throws SQLException {
+                return JdbcUtil.getResultValue(resultSet, index, columnClassName);
+            }
+        };
+
+        abstract Object read(ResultSet resultSet, int index, String columnClassName) throws SQLException;
+
+        /**
+         * 根据列类型和列类名选择读取器
+         *
+         * @param columnType      列类型
+         * @param columnClassName 列类名
+         * @return 列读取器
+         */
+        static ColumnReader of(int columnType, String columnClassName) {
+            switch (columnType) {
+                case Types.BLOB:
+                case Types.CLOB:
+                case Types.NCLOB:
+                    return LOB;
+                case Types.ARRAY:
+                    return ARRAY;
+                default:
+                    break;
+            }
+            if (columnClassName == null) {
+                return GENERIC;
+            }
+            switch (columnClassName) {
+                case "java.sql.Timestamp":
+                case "oracle.sql.TIMESTAMP":
+                case "oracle.sql.TIMESTAMPTZ":
+                    return TIMESTAMP;
+                case "java.lang.Object":
+                    return GENERIC;
+                default:
+                    if (columnClassName.startsWith("java.lang.") || columnClassName.startsWith("java.math.")) {
+                        return OBJECT;
+                    }
+                    return GENERIC;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package rabbit.sql.utils;
+
+import rabbit.common.types.CExpression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的动态sql模版<br>
+ * 将带有 {@code --#if} 和 {@code --#fi} 的sql一次性拆分为静态片段和条件表达式，
+ * 每次渲染只需计算条件并拼接片段，同一组条件结果下修正过where和逗号的最终sql也会被缓存
+ *
+ * @see CExpression
+ */
+public final class DynamicSqlTemplate {
+    private static final Pattern UPDATE_COMMA_WHERE = Pattern.compile(",\\s*where", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE_AND_OR = Pattern.compile("where\\s+(and|or)\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE_KEYWORDS = Pattern.compile("where\\s+(order by|limit|group by|union)\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE_END = Pattern.compile("where\\s*$", Pattern.CASE_INSENSITIVE);
+    /**
+     * 最多缓存的条件组合结果数
+     */
+    private static final int MAX_RENDERED = 64;
+
+    private final String source;
+    private final boolean dynamic;
+    private final boolean update;
+    private final String[] segments;
+    private final int[] segmentConditions;
+    private final CExpression[] conditions;
+    private final Map<Long, String> rendered = new ConcurrentHashMap<>();
+
+    private DynamicSqlTemplate(String source, boolean dynamic, boolean update, String[] segments, int[] segmentConditions, CExpression[] conditions) {
+        this.source = source;
+        this.dynamic = dynamic;
+        this.update = update;
+        this.segments = segments;
+        this.segmentConditions = segmentConditions;
+        this.conditions = conditions;
+    }
+
+    /**
+     * 编译一个动态sql模版
+     *
+     * @param sql sql
+     * @return 动态sql模版
+     */
+    public static DynamicSqlTemplate compile(final String sql) {
+        if (!sql.contains("--#if") || !sql.contains("--#fi")) {
+            return new DynamicSqlTemplate(sql, false, false, new String[0], new int[0], new CExpression[0]);
+        }
+        List<String> segments = new ArrayList<>();
+        List<Integer> segmentConditions = new ArrayList<>();
+        List<CExpression> conditions = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        String[] lines = sql.split("\n");
+        String firstLine = lines.length > 0 ? lines[0].trim() : "";
+        // -1表示不受条件控制的静态片段
+        int current = -1;
+        for (String line : lines) {
+            String trimLine = line.trim();
+            if (trimLine.startsWith("--#if") && current == -1) {
+                addSegment(segments, segmentConditions, segment, current);
+                conditions.add(CExpression.of(trimLine.substring(5)));
+                current = conditions.size() - 1;
+                continue;
+            }
+            if (trimLine.startsWith("--#fi") && current != -1) {
+                addSegment(segments, segmentConditions, segment, current);
+                current = -1;
+                continue;
+            }
+            segment.append(line).append("\n");
+        }
+        addSegment(segments, segmentConditions, segment, current);
+        int[] cnds = new int[segmentConditions.size()];
+        for (int i = 0; i < cnds.length; i++) {
+            cnds[i] = segmentConditions.get(i);
+        }
+        return new DynamicSqlTemplate(sql, true, firstLine.startsWith("update"),
+                segments.toArray(new String[0]), cnds, conditions.toArray(new CExpression[0]));
+    }
+
+    private static void addSegment(List<String> segments, List<Integer> segmentConditions, StringBuilder segment, int condition) {
+        if (segment.length() > 0) {
+            segments.add(segment.toString());
+            segmentConditions.add(condition);
+            segment.setLength(0);
+        }
+    }
+
+    /**
+     * 根据参数计算条件表达式并生成最终的sql
+     *
+     * @param args 参数字典
+     * @return 解析后的sql
+     */
+    public String render(Map<String, Object> args) {
+        if (args == null || args.isEmpty() || !dynamic) {
+            return source;
+        }
+        boolean[] results = new boolean[conditions.length];
+        long key = 0;
+        for (int i = 0; i < conditions.length; i++) {
+            results[i] = conditions[i].calc(args);
+            if (results[i] && i < Long.SIZE) {
+                key |= 1L << i;
+            }
+        }
+        if (conditions.length > Long.SIZE) {
+            return concat(results);
+        }
+        String sql = rendered.get(key);
+        if (sql == null) {
+            sql = concat(results);
+            if (rendered.size() < MAX_RENDERED) {
+                rendered.put(key, sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * 拼接条件成立的片段，并修正多余的where，and，or和逗号
+     *
+     * @param results 每个条件的计算结果
+     * @return sql
+     */
+    private String concat(boolean[] results) {
+        StringBuilder sb = new StringBuilder(source.length());
+        for (int i = 0; i < segments.length; i++) {
+            int cnd = segmentConditions[i];
+            if (cnd == -1 || results[cnd]) {
+                sb.append(segments[i]);
+            }
+        }
+        String dSql = sb.toString();
+        Matcher m;
+        if (update) {
+            m = UPDATE_COMMA_WHERE.matcher(dSql);
+            if (m.find()) {
+                dSql = dSql.substring(0, m.start()).concat(dSql.substring(m.start() + 1));
+            }
+        }
+        m = WHERE_AND_OR.matcher(dSql);
+        if (m.find()) {
+            return dSql.substring(0, m.start() + 6).concat(dSql.substring(m.end()));
+        }
+        m = WHERE_KEYWORDS.matcher(dSql);
+        if (m.find()) {
+            return dSql.substring(0, m.start()).concat(dSql.substring(m.start() + 6));
+        }
+        m = WHERE_END.matcher(dSql);
+        if (m.find()) {
+            return dSql.substring(0, m.start());
+        }
+        return dSql;
+    }
+
+    /**
+     * 是否包含动态sql条件
+     *
+     * @return 是否动态sql
+     */
+    public boolean isDynamic() {
+        return dynamic;
+    }
+
+    /**
+     * 获取原始sql
+     *
+     * @return 原始sql
+     */
+    public String getSource() {
+        return source;
+    }
+}
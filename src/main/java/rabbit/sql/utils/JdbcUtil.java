@@ -3,22 +3,22 @@ package rabbit.sql.utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rabbit.common.types.DataRow;
-import rabbit.common.utils.DateTimes;
 import rabbit.sql.types.Param;
 import rabbit.sql.types.ParamMode;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.sql.*;
 import java.time.*;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import static rabbit.common.utils.ReflectUtil.obj2Json;
-
 /**
  * JDBC工具类
  */
@@ -37,6 +37,19 @@ public class JdbcUtil {
      * @throws SQLException ex
      */
     public static Object getResultValue(ResultSet resultSet, int index) throws SQLException {
+        return getResultValue(resultSet, index, null);
+    }
+
+    /**
+     * 获取result结果
+     *
+     * @param resultSet       resultSet
+     * @param index           序号
+     * @param columnClassName 已知的列类名，为null则在需要时从结果集元数据中获取
+     * @return java类型值
+     * @throws SQLException ex
+     */
+    public static Object getResultValue(ResultSet resultSet, int index, String columnClassName) throws SQLException {
         Object obj = resultSet.getObject(index);
         String className = null;
         if (obj != null) {
@@ -57,14 +70,15 @@ public class JdbcUtil {
         } else if ("oracle.sql.TIMESTAMP".equals(className) || "oracle.sql.TIMESTAMPTZ".equals(className)) {
             obj = resultSet.getTimestamp(index);
         } else if (className != null && className.startsWith("oracle.sql.DATE")) {
-            String metaDataClassName = resultSet.getMetaData().getColumnClassName(index);
+            String metaDataClassName = columnClassName != null ? columnClassName : resultSet.getMetaData().getColumnClassName(index);
             if ("java.sql.Timestamp".equals(metaDataClassName) || "oracle.sql.TIMESTAMP".equals(metaDataClassName)) {
                 obj = resultSet.getTimestamp(index);
             } else {
                 obj = resultSet.getDate(index);
             }
         } else if (obj instanceof java.sql.Date) {
-            if ("java.sql.Timestamp".equals(resultSet.getMetaData().getColumnClassName(index))) {
+            String metaDataClassName = columnClassName != null ? columnClassName : resultSet.getMetaData().getColumnClassName(index);
+            if ("java.sql.Timestamp".equals(metaDataClassName)) {
                 obj = resultSet.getTimestamp(index);
             }
         }
@@ -161,6 +175,75 @@ public class JdbcUtil {
         return false;
     }
 
+    /**
+     * 判断驱动是否支持批量执行后返回整批数据生成的键<br>
+     * SQLite驱动声明支持生成键，但批量执行后只返回最后一行的键
+     *
+     * @param con 连接对象
+     * @return 是否支持
+     */
+    public static boolean supportsBatchGeneratedKeys(Connection con) {
+        try {
+            DatabaseMetaData dbmd = con.getMetaData();
+            if (dbmd != null) {
+                if (dbmd.supportsGetGeneratedKeys() && !dbmd.getDriverName().toLowerCase().contains("sqlite")) {
+                    log.debug("JDBC driver supports batch generated keys");
+                    return true;
+                } else {
+                    log.debug("JDBC driver does not support batch generated keys");
+                }
+            }
+        } catch (SQLException ex) {
+            log.debug("JDBC driver 'supportsGetGeneratedKeys' method threw exception", ex);
+        }
+        return false;
+    }
+
+    /**
+     * 汇总批量执行返回的受影响行数<br>
+     * {@link Statement#SUCCESS_NO_INFO}表示执行成功但行数未知，按1行计算，{@link Statement#EXECUTE_FAILED}不计算
+     *
+     * @param updateCounts 每条语句的受影响行数
+     * @return 总的受影响行数
+     */
+    public static int sumUpdateCounts(int[] updateCounts) {
+        int sum = 0;
+        for (int count : updateCounts) {
+            if (count > 0) {
+                sum += count;
+            } else if (count == Statement.SUCCESS_NO_INFO) {
+                sum++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 获取批量执行中失败的行号
+     *
+     * @param e      批量执行异常
+     * @param offset 批次开始的行号
+     * @param size   批次的行数
+     * @return 失败的行号
+     */
+    public static List<Integer> getFailedRows(BatchUpdateException e, int offset, int size) {
+        List<Integer> rows = new ArrayList<>();
+        int[] updateCounts = e.getUpdateCounts();
+        if (updateCounts == null) {
+            updateCounts = new int[0];
+        }
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                rows.add(offset + i);
+            }
+        }
+        // 驱动在第一个错误处停止执行，返回的行数少于批次的行数
+        if (rows.isEmpty() && updateCounts.length < size) {
+            rows.add(offset + updateCounts.length);
+        }
+        return rows;
+    }
+
     /**
      * 关闭结果集
      *
@@ -253,15 +336,15 @@ public class JdbcUtil {
      */
     public static List<DataRow> createDataRows(final ResultSet resultSet, final String executedSql, final long fetchSize) throws SQLException {
         List<DataRow> list = new ArrayList<>();
-        String[] names = null;
+        ColumnReaderPlan plan = null;
         long size = fetchSize;
         while (resultSet.next()) {
             if (size == 0)
                 break;
-            if (names == null) {
-                names = createNames(resultSet, executedSql);
+            if (plan == null) {
+                plan = ColumnReaderPlan.of(resultSet, executedSql);
             }
-            list.add(createDataRow(names, resultSet));
+            list.add(plan.read(resultSet));
             size--;
         }
         closeResultSet(resultSet);
@@ -304,64 +387,10 @@ public class JdbcUtil {
      * @throws SQLException sqlExp
      */
     public static void setStatementValue(PreparedStatement statement, int index, Object value) throws SQLException {
-        String pClass = statement.getParameterMetaData().getParameterClassName(index);
-        String pType = statement.getParameterMetaData().getParameterTypeName(index);
-        // if postgresql, insert as json(b) type
-        // if column is json type
-        if (pType.equals("json") || pType.equals("jsonb")) {
-            if (value instanceof String) {
-                statement.setObject(index, createPgObject(pType, value.toString()));
-            } else {
-                statement.setObject(index, createPgObject(pType, obj2Json(value)));
-            }
-        } else if (pClass.equals("java.lang.String") && !(value instanceof String)) {
-            if (value instanceof Map || value instanceof Collection) {
-                statement.setObject(index, obj2Json(value));
-                // maybe Date, LocalDateTime, UUID, BigDecimal, Integer...
-            } else if (value.getClass().getTypeName().startsWith("java.")) {
-                statement.setObject(index, value.toString());
-            } else {
-                // maybe is java bean
-                statement.setObject(index, obj2Json(value));
-            }
-            // if is postgresql array
-        } else if (pClass.equals("java.sql.Array") && value instanceof Collection) {
-            statement.setObject(index, ((Collection<?>) value).toArray());
-        } else if (pClass.equals("java.sql.Date") && value instanceof String) {
-            statement.setObject(index, new Date(DateTimes.toEpochMilli((String) value)));
-        } else if (pClass.equals("java.sql.Time") && value instanceof String) {
-            statement.setObject(index, new Time(DateTimes.toEpochMilli((String) value)));
-        } else if (pClass.equals("java.sql.Timestamp") && value instanceof String) {
-            statement.setObject(index, new Timestamp(DateTimes.toEpochMilli((String) value)));
-        } else {
-            if (value instanceof java.util.Date) {
-                statement.setObject(index, new Date(((java.util.Date) value).getTime()));
-            } else if (value instanceof LocalDateTime) {
-                statement.setObject(index, new Timestamp(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
-            } else if (value instanceof LocalDate) {
-                statement.setObject(index, new Date(((LocalDate) value).atStartOfDay(ZoneOffset.systemDefault()).toInstant().toEpochMilli()));
-            } else if (value instanceof LocalTime) {
-                statement.setObject(index, new Time(((LocalTime) value).atDate(LocalDate.now()).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
-            } else if (value instanceof Instant) {
-                statement.setObject(index, new Timestamp(((Instant) value).toEpochMilli()));
-            } else if (value instanceof InputStream) {
-                try (BufferedInputStream in = new BufferedInputStream((InputStream) value)) {
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    BufferedOutputStream bo = new BufferedOutputStream(out);
-                    int i;
-                    while ((i = in.read()) != -1) {
-                        bo.write(i);
-                    }
-                    bo.flush();
-                    statement.setObject(index, out.toByteArray());
-                    bo.close();
-                } catch (IOException e) {
-                    throw new RuntimeException("convert inputstream error:", e);
-                }
-            } else {
-                statement.setObject(index, value);
-            }
-        }
+        ParameterMetaData metaData = statement.getParameterMetaData();
+        String pClass = metaData.getParameterClassName(index);
+        String pType = metaData.getParameterTypeName(index);
+        ParamConverter.of(pClass, pType).set(statement, index, value, pType);
     }
 
     /**
@@ -416,4 +445,100 @@ public class JdbcUtil {
             }
         }
     }
+
+    /**
+     * 将数字或时间类型的值范围平均分为多个区间，返回去重后的区间边界（包含上界和下界）<br>
+     * 整数和时间类型的边界向下取整，区间数大于值的个数时边界会少于区间数加1，下界不小于上界时只返回下界
+     *
+     * @param lower      下界
+     * @param upper      上界
+     * @param partitions 区间数
+     * @return 区间边界
+     * @throws IllegalArgumentException 不支持的值类型
+     */
+    public static List<Object> splitRange(Object lower, Object upper, int partitions) {
+        BigDecimal lo = toDecimal(lower);
+        BigDecimal hi = toDecimal(upper);
+        List<Object> bounds = new ArrayList<>();
+        bounds.add(lower);
+        if (lo.compareTo(hi) >= 0) {
+            return bounds;
+        }
+        BigDecimal step = hi.subtract(lo).divide(BigDecimal.valueOf(partitions), MathContext.DECIMAL128);
+        BigDecimal last = lo;
+        for (int i = 1; i < partitions; i++) {
+            BigDecimal bound = lo.add(step.multiply(BigDecimal.valueOf(i)));
+            if (isIntegral(lower)) {
+                bound = bound.setScale(0, RoundingMode.FLOOR);
+            }
+            if (bound.compareTo(last) > 0 && bound.compareTo(hi) < 0) {
+                bounds.add(fromDecimal(bound, lower));
+                last = bound;
+            }
+        }
+        bounds.add(upper);
+        return bounds;
+    }
+
+    /**
+     * 区间边界是否需要取整（整数和时间类型）
+     *
+     * @param value 值
+     * @return 是否取整
+     */
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ||
+                value instanceof BigInteger || !(value instanceof Number);
+    }
+
+    /**
+     * 数字或时间（毫秒数）转为BigDecimal
+     *
+     * @param value 值
+     * @return BigDecimal
+     */
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString());
+        }
+        if (value instanceof java.util.Date) {
+            return BigDecimal.valueOf(((java.util.Date) value).getTime());
+        }
+        if (value instanceof LocalDateTime) {
+            return BigDecimal.valueOf(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        if (value instanceof LocalDate) {
+            return BigDecimal.valueOf(((LocalDate) value).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        if (value instanceof Instant) {
+            return BigDecimal.valueOf(((Instant) value).toEpochMilli());
+        }
+        throw new IllegalArgumentException("unsupported range value type: " + (value == null ? null : value.getClass().getName()));
+    }
+
+    /**
+     * BigDecimal按照样本值的类型转换回原来的类型，时间类型转为{@link Timestamp}
+     *
+     * @param value  值
+     * @param sample 样本值
+     * @return 转换后的值
+     */
+    private static Object fromDecimal(BigDecimal value, Object sample) {
+        if (sample instanceof Integer || sample instanceof Short || sample instanceof Byte) {
+            return value.intValue();
+        }
+        if (sample instanceof Long) {
+            return value.longValue();
+        }
+        if (sample instanceof BigInteger) {
+            return value.toBigInteger();
+        }
+        if (sample instanceof Number) {
+            return value;
+        }
+        return new Timestamp(value.longValue());
+    }
 }
@@ -0,0 +1,186 @@
+package rabbit.sql.utils;
+
+import rabbit.common.utils.DateTimes;
+
+import java.io.*;
+import java.sql.*;
+import java.time.*;
+import java.util.Collection;
+import java.util.Map;
+
+import static rabbit.common.utils.ReflectUtil.obj2Json;
+
+/**
+ * 预编译sql参数值转换器，根据参数的类名和类型名选择，在设置参数值时将java对象转换为合适的jdbc类型
+ *
+ * @see rabbit.sql.support.BindingPlan
+ */
+public enum ParamConverter {
+    /**
+     * PostgreSQL的json(b)类型
+     */
+    JSON {
+        @Override
+        public void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException {
+            if (value instanceof String) {
+                statement.setObject(index, JdbcUtil.createPgObject(pType, value.toString()));
+            } else {
+                statement.setObject(index, JdbcUtil.createPgObject(pType, obj2Json(value)));
+            }
+        }
+    },
+    /**
+     * 字符串类型，非字符串的值转为字符串或json
+     */
+    STRING {
+        @Override
+        public void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException {
+            if (value == null || value instanceof String) {
+                DEFAULT.set(statement, index, value, pType);
+            } else if (value instanceof Map || value instanceof Collection) {
+                statement.setObject(index, obj2Json(value));
+                // maybe Date, LocalDateTime, UUID, BigDecimal, Integer...
+            } else if (value.getClass().getTypeName().startsWith("java.")) {
+                statement.setObject(index, value.toString());
+            } else {
+                // maybe is java bean
+                statement.setObject(index, obj2Json(value));
+            }
+        }
+    },
+    /**
+     * 数组类型，集合转为数组，PostgreSQL的数组类型（类型名以下划线开头，例如{@code _int4}）按元素类型创建数组对象
+     */
+    ARRAY {
+        @Override
+        public void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException {
+            if (value instanceof Collection) {
+                Object[] array = ((Collection<?>) value).toArray();
+                if (pType != null && pType.startsWith("_")) {
+                    statement.setArray(index, statement.getConnection().createArrayOf(pType.substring(1), array));
+                } else {
+                    statement.setObject(index, array);
+                }
+            } else {
+                DEFAULT.set(statement, index, value, pType);
+            }
+        }
+    },
+    /**
+     * 日期类型，字符串转为日期
+     */
+    DATE {
+        @Override
+        public void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException {
+            if (value instanceof String) {
+                statement.setObject(index, new Date(DateTimes.toEpochMilli((String) value)));
+            } else {
+                DEFAULT.set(statement, index, value, pType);
+            }
+        }
+    },
+    /**
+     * 时间类型，字符串转为时间
+     */
+    TIME {
+        @Override
+        public void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException {
+            if (value instanceof String) {
+                statement.setObject(index, new Time(DateTimes.toEpochMilli((String) value)));
+            } else {
+                DEFAULT.set(statement, index, value, pType);
+            }
+        }
+    },
+    /**
+     * 时间戳类型，字符串转为时间戳
+     */
+    TIMESTAMP {
+        @Override
+        public void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException {
+            if (value instanceof String) {
+                statement.setObject(index, new Timestamp(DateTimes.toEpochMilli((String) value)));
+            } else {
+                DEFAULT.set(statement, index, value, pType);
+            }
+        }
+    },
+    /**
+     * 其他类型，java8时间类型和输入流做必要的转换
+     */
+    DEFAULT {
+        @Override
+        public void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException {
+            if (value instanceof java.util.Date) {
+                statement.setObject(index, new Date(((java.util.Date) value).getTime()));
+            } else if (value instanceof LocalDateTime) {
+                statement.setObject(index, new Timestamp(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+            } else if (value instanceof LocalDate) {
+                statement.setObject(index, new Date(((LocalDate) value).atStartOfDay(ZoneOffset.systemDefault()).toInstant().toEpochMilli()));
+            } else if (value instanceof LocalTime) {
+                statement.setObject(index, new Time(((LocalTime) value).atDate(LocalDate.now()).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+            } else if (value instanceof Instant) {
+                statement.setObject(index, new Timestamp(((Instant) value).toEpochMilli()));
+            } else if (value instanceof InputStream) {
+                try (BufferedInputStream in = new BufferedInputStream((InputStream) value)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    BufferedOutputStream bo = new BufferedOutputStream(out);
+                    int i;
+                    while ((i = in.read()) != -1) {
+                        bo.write(i);
+                    }
+                    bo.flush();
+                    statement.setObject(index, out.toByteArray());
+                    bo.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("convert inputstream error:", e);
+                }
+            } else {
+                statement.setObject(index, value);
+            }
+        }
+    };
+
+    /**
+     * 设置参数值
+     *
+     * @param statement statement
+     * @param index     序号
+     * @param value     值
+     * @param pType     参数类型名
+     * @throws SQLException sqlExp
+     */
+    public abstract void set(PreparedStatement statement, int index, Object value, String pType) throws SQLException;
+
+    /**
+     * 根据参数的类名和类型名选择转换器
+     *
+     * @param pClass 参数类名
+     * @param pType  参数类型名
+     * @return 转换器
+     */
+    public static ParamConverter of(String pClass, String pType) {
+        // if postgresql, insert as json(b) type
+        if ("json".equals(pType) || "jsonb".equals(pType)) {
+            return JSON;
+        }
+        if (pClass == null) {
+            return DEFAULT;
+        }
+        switch (pClass) {
+            case "java.lang.String":
+                return STRING;
+            // if is postgresql array
+            case "java.sql.Array":
+                return ARRAY;
+            case "java.sql.Date":
+                return DATE;
+            case "java.sql.Time":
+                return TIME;
+            case "java.sql.Timestamp":
+                return TIMESTAMP;
+            default:
+                return DEFAULT;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package rabbit.sql.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 流式sql脚本读取器，从字符流中逐条切分sql语句，任意时刻只有当前语句驻留内存<br>
+ * 单引号字符串、双引号和反引号标识符、单行和块注释以及PostgreSQL的美元符号引用字符串（{@code $tag$...$tag$}）中的分隔符不会切分语句，
+ * 语句开头的注释将被丢弃，只包含注释或空白的语句将被跳过：
+ * <blockquote>
+ * <pre>try ({@link SqlScriptReader} reader = SqlScriptReader.of(path, StandardCharsets.UTF_8)) {
+ *       reader.forEachRemaining(System.out::println);
+ *         }</pre>
+ * </blockquote>
+ */
+public final class SqlScriptReader implements Iterator<String>, AutoCloseable {
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int pushed = -1;
+    private String delimiter = ";";
+    private boolean backslashEscapes;
+    private String next;
+    private boolean eof;
+
+    /**
+     * 构造函数
+     *
+     * @param reader 字符流
+     */
+    public SqlScriptReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 以缓冲字符流读取一个sql脚本文件
+     *
+     * @param path    文件路径
+     * @param charset 字符集
+     * @return sql脚本读取器
+     * @throws IOException 文件无法打开
+     */
+    public static SqlScriptReader of(Path path, Charset charset) throws IOException {
+        return new SqlScriptReader(Files.newBufferedReader(path, charset));
+    }
+
+    /**
+     * 设置语句分隔符，默认为分号
+     *
+     * @param delimiter 分隔符
+     */
+    public void setDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("delimiter must not be empty.");
+        }
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * 设置字符串中的反斜杠是否为转义符（例如MySQL导出的脚本中的{@code \'}），默认false
+     *
+     * @param backslashEscapes 反斜杠是否转义
+     */
+    public void setBackslashEscapes(boolean backslashEscapes) {
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !eof) {
+            try {
+                next = readStatement();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String sql = next;
+        next = null;
+        return sql;
+    }
+
+    /**
+     * 读取下一条语句
+     *
+     * @return 语句，已到达末尾则返回null
+     * @throws IOException ioEx
+     */
+    private String readStatement() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean hasContent = false;
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            switch (ch) {
+                case '\'':
+                case '"':
+                case '`':
+                    sb.append(ch);
+                    readQuoted(sb, ch);
+                    hasContent = true;
+                    continue;
+                case '-': {
+                    int n = read();
+                    if (n == '-') {
+                        readLineComment(hasContent ? sb.append("--") : null);
+                        continue;
+                    }
+                    unread(n);
+                    break;
+                }
+                case '/': {
+                    int n = read();
+                    if (n == '*') {
+                        readBlockComment(hasContent ? sb.append("/*") : null);
+                        continue;
+                    }
+                    unread(n);
+                    break;
+                }
+                case '$':
+                    sb.append(ch);
+                    hasContent = true;
+                    readDollarQuoted(sb);
+                    continue;
+                default:
+            }
+            if (!hasContent && Character.isWhitespace(ch)) {
+                continue;
+            }
+            sb.append(ch);
+            hasContent = true;
+            if (endsWith(sb, delimiter)) {
+                sb.setLength(sb.length() - delimiter.length());
+                String sql = sb.toString().trim();
+                if (!sql.isEmpty()) {
+                    return sql;
+                }
+                sb.setLength(0);
+                hasContent = false;
+            }
+        }
+        eof = true;
+        String sql = sb.toString().trim();
+        return sql.isEmpty() ? null : sql;
+    }
+
+    private void readQuoted(StringBuilder sb, char quote) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            sb.append((char) c);
+            if (c == quote) {
+                return;
+            }
+            if (c == '\\' && backslashEscapes && quote == '\'') {
+                int n = read();
+                if (n != -1) {
+                    sb.append((char) n);
+                }
+            }
+        }
+    }
+
+    private void readLineComment(StringBuilder sb) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '\n') {
+                // 换行符作为空白保留，避免前后两行拼接
+                unread(c);
+                return;
+            }
+            if (sb != null) {
+                sb.append((char) c);
+            }
+        }
+    }
+
+    private void readBlockComment(StringBuilder sb) throws IOException {
+        int prev = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (sb != null) {
+                sb.append((char) c);
+            }
+            if (prev == '*' && c == '/') {
+                return;
+            }
+            prev = c;
+        }
+    }
+
+    /**
+     * 读取美元符号之后的部分，如果是美元符号引用字符串的开始，则读取到引用结束
+     *
+     * @param sb 当前语句，最后一个字符为美元符号
+     * @throws IOException ioEx
+     */
+    private void readDollarQuoted(StringBuilder sb) throws IOException {
+        int start = sb.length() - 1;
+        // 美元符号在标识符中间（例如 a$b）时不是引用字符串的开始
+        if (start > 0) {
+            char prev = sb.charAt(start - 1);
+            if (Character.isLetterOrDigit(prev) || prev == '_' || prev == '$') {
+                return;
+            }
+        }
+        int c = read();
+        if (c != -1 && (Character.isLetter(c) || c == '_')) {
+            do {
+                sb.append((char) c);
+                c = read();
+            } while (c != -1 && (Character.isLetterOrDigit(c) || c == '_'));
+        }
+        if (c != '$') {
+            unread(c);
+            return;
+        }
+        sb.append('$');
+        String tag = sb.substring(start);
+        while ((c = read()) != -1) {
+            sb.append((char) c);
+            if (c == '$' && sb.length() - start >= tag.length() * 2 && endsWith(sb, tag)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean endsWith(StringBuilder sb, String suffix) {
+        int offset = sb.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (sb.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pushed != -1) {
+            int c = pushed;
+            pushed = -1;
+            return c;
+        }
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private void unread(int c) {
+        pushed = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
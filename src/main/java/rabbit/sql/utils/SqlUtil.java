@@ -2,6 +2,8 @@ package rabbit.sql.utils;
 
 import rabbit.common.tuple.Pair;
 import rabbit.common.types.CExpression;
+import rabbit.sql.cache.BoundedCache;
+import rabbit.sql.cache.Eviction;
 import rabbit.sql.types.Ignore;
 
 import java.util.*;
@@ -16,6 +18,10 @@ public class SqlUtil {
      * 特殊字符用来防止字段名重复的问题
      */
     public static final String SEP = "\u02de";
+    /**
+     * 单个in子句最多的占位符数量（Oracle的in列表最多1000个值）
+     */
+    public static final int IN_CHUNK_SIZE = 512;
     /**
      * 匹配命名参数
      */
@@ -24,6 +30,34 @@ public class SqlUtil {
      * 匹配字符串单引号里面的内容
      */
     public static final Pattern CHILD_STR_PATTERN = Pattern.compile("'[^']*'", Pattern.MULTILINE);
+    /**
+     * 字符串模版占位符位置缓存
+     */
+    private static final BoundedCache<String, int[]> SQL_PART_POSITIONS = new BoundedCache<>(256, Eviction.LRU);
+    /**
+     * 非sql文件中的动态sql的预编译模版缓存（sql文件中的模版由{@link rabbit.sql.dao.SQLFileManager}加载时预编译）
+     */
+    private static final BoundedCache<String, DynamicSqlTemplate> DYNAMIC_SQL_TEMPLATES = new BoundedCache<>(256, Eviction.LRU);
+    /**
+     * 表名标识符（可带模式名和引号）
+     */
+    private static final String TABLE_NAME = "[\\w.\"`\\[\\]]+";
+    /**
+     * 表的别名（可选）
+     */
+    private static final String TABLE_ALIAS = "(?:\\s+(?:as\\s+)?(?!(?:where|join|on|left|right|inner|outer|full|cross|natural|group|order|having|limit|union|window)\\b)\\w+)?";
+    /**
+     * 匹配注释
+     */
+    private static final Pattern COMMENT_PATTERN = Pattern.compile("--[^\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+    /**
+     * 匹配查询语句from和join之后的表名（from子句可以有多个逗号分隔的表）
+     */
+    private static final Pattern QUERY_TABLE_PATTERN = Pattern.compile("\\bfrom\\s+(" + TABLE_NAME + TABLE_ALIAS + "(?:\\s*,\\s*" + TABLE_NAME + TABLE_ALIAS + ")*)|\\bjoin\\s+(" + TABLE_NAME + ")", Pattern.CASE_INSENSITIVE);
+    /**
+     * 匹配写操作的目标表名
+     */
+    private static final Pattern MODIFIED_TABLE_PATTERN = Pattern.compile("\\b(?:insert\\s+(?:ignore\\s+)?into|replace\\s+into|merge\\s+into|delete\\s+from|delete|update|truncate\\s+table|truncate|drop\\s+table(?:\\s+if\\s+exists)?|alter\\s+table)\\s+(" + TABLE_NAME + ")", Pattern.CASE_INSENSITIVE);
 
     /**
      * 构建一个插入语句
@@ -35,6 +69,19 @@ public class SqlUtil {
      * @return 插入语句
      */
     public static String generateInsert(final String tableName, final Map<String, Object> row, final Ignore ignore, List<String> fields) {
+        Set<String> keys = filterInsertFields(row, ignore, fields);
+        return generateInsert(tableName, keys);
+    }
+
+    /**
+     * 根据行数据和忽略类型过滤出需要插入的字段，行数据中被过滤的字段将被移除
+     *
+     * @param row    数据
+     * @param ignore 忽略类型
+     * @param fields 需要包含的字段集合
+     * @return 需要插入的字段
+     */
+    private static Set<String> filterInsertFields(final Map<String, Object> row, final Ignore ignore, List<String> fields) {
         Set<String> keys = row.keySet();
         if (fields != null && !fields.isEmpty()) {
             Iterator<String> keyIterator = keys.iterator();
@@ -64,7 +111,10 @@ public class SqlUtil {
         if (keys.isEmpty()) {
             throw new IllegalArgumentException("empty field set, generate insert sql error.");
         }
+        return keys;
+    }
 
+    private static String generateInsert(final String tableName, final Collection<String> keys) {
         StringBuilder f = new StringBuilder();
         StringBuilder h = new StringBuilder();
         for (String key : keys) {
@@ -74,6 +124,180 @@ public class SqlUtil {
         return "insert into " + tableName + "(" + f.substring(0, f.length() - 2) + ") \nvalues (" + h.substring(0, h.length() - 2) + ")";
     }
 
+    /**
+     * 构建一个合并（upsert）语句，字段的确定方式同{@link #generateInsert(String, Map, Ignore, List)}<br>
+     * <ul>
+     *     <li>PostgreSQL，SQLite：{@code insert ... on conflict (keys) do update set ...}；</li>
+     *     <li>MySQL，MariaDB：{@code insert ... on duplicate key update ...}（冲突由表的唯一索引决定）；</li>
+     *     <li>Oracle，SQL Server：{@code merge into ... using (select ...) ...}。</li>
+     * </ul>
+     *
+     * @param dbName       数据库名（小写）
+     * @param tableName    表名
+     * @param row          数据
+     * @param ignore       忽略类型
+     * @param fields       需要包含的字段集合
+     * @param conflictKeys 冲突判断的字段
+     * @return 合并语句
+     * @throws UnsupportedOperationException 不支持的数据库
+     */
+    public static String generateUpsert(final String dbName, final String tableName, final Map<String, Object> row, final Ignore ignore, List<String> fields, Collection<String> conflictKeys) {
+        Set<String> keys = filterInsertFields(row, ignore, fields);
+        List<String> updates = getUpsertUpdateFields(keys, conflictKeys);
+        switch (dbName) {
+            case "postgresql":
+            case "sqlite":
+                return generateInsert(tableName, keys) + onConflict(conflictKeys, updates);
+            case "mysql":
+            case "mariadb":
+                return generateInsert(tableName, keys) + onDuplicateKey(keys, updates);
+            case "oracle":
+            case "microsoft sql server": {
+                boolean oracle = dbName.equals("oracle");
+                StringJoiner source = new StringJoiner(", ", "select ", oracle ? " from dual" : "");
+                for (String key : keys) {
+                    source.add(":" + key + (oracle ? " " : " as ") + key);
+                }
+                StringJoiner on = new StringJoiner(" and ");
+                for (String key : conflictKeys) {
+                    on.add("t0." + key + " = s." + key);
+                }
+                StringBuilder sb = new StringBuilder("merge into ").append(tableName).append(oracle ? " t0" : " as t0")
+                        .append(" \nusing (").append(source).append(oracle ? ") s" : ") as s")
+                        .append(" \non (").append(on).append(")");
+                if (!updates.isEmpty()) {
+                    StringJoiner set = new StringJoiner(", ");
+                    for (String update : updates) {
+                        set.add("t0." + update + " = s." + update);
+                    }
+                    sb.append(" \nwhen matched then update set ").append(set);
+                }
+                StringJoiner values = new StringJoiner(", ");
+                for (String key : keys) {
+                    values.add("s." + key);
+                }
+                sb.append(" \nwhen not matched then insert (").append(String.join(", ", keys)).append(") values (").append(values).append(")");
+                // SQL Server的merge语句必须以分号结束
+                return oracle ? sb.toString() : sb.append(";").toString();
+            }
+            default:
+                throw new UnsupportedOperationException("upsert is not supported by database: " + dbName);
+        }
+    }
+
+    /**
+     * 构建一个从临时表合并到目标表的基于集合的合并语句，只支持PostgreSQL，SQLite，MySQL和MariaDB
+     *
+     * @param dbName       数据库名（小写）
+     * @param tableName    目标表名
+     * @param stagingTable 临时表名
+     * @param fields       字段集合
+     * @param conflictKeys 冲突判断的字段
+     * @return 合并语句
+     * @throws UnsupportedOperationException 不支持的数据库
+     */
+    public static String generateStagingUpsert(final String dbName, final String tableName, final String stagingTable, Collection<String> fields, Collection<String> conflictKeys) {
+        List<String> updates = getUpsertUpdateFields(fields, conflictKeys);
+        String f = String.join(", ", fields);
+        // SQLite需要where子句以避免on conflict被解析为join的约束
+        String insert = "insert into " + tableName + "(" + f + ") \nselect " + f + " from " + stagingTable + " where 1 = 1";
+        switch (dbName) {
+            case "postgresql":
+            case "sqlite":
+                return insert + onConflict(conflictKeys, updates);
+            case "mysql":
+            case "mariadb":
+                return insert + onDuplicateKey(fields, updates);
+            default:
+                throw new UnsupportedOperationException("staging upsert is not supported by database: " + dbName);
+        }
+    }
+
+    private static List<String> getUpsertUpdateFields(Collection<String> fields, Collection<String> conflictKeys) {
+        if (conflictKeys == null || conflictKeys.isEmpty()) {
+            throw new IllegalArgumentException("conflict keys must not be empty.");
+        }
+        if (!fields.containsAll(conflictKeys)) {
+            throw new IllegalArgumentException("conflict keys " + conflictKeys + " must be included in fields " + fields + ".");
+        }
+        List<String> updates = new ArrayList<>();
+        for (String field : fields) {
+            if (!conflictKeys.contains(field)) {
+                updates.add(field);
+            }
+        }
+        return updates;
+    }
+
+    private static String onConflict(Collection<String> conflictKeys, List<String> updates) {
+        String clause = " \non conflict (" + String.join(", ", conflictKeys) + ")";
+        if (updates.isEmpty()) {
+            return clause + " do nothing";
+        }
+        StringJoiner set = new StringJoiner(", ");
+        for (String update : updates) {
+            set.add(update + " = excluded." + update);
+        }
+        return clause + " do update set " + set;
+    }
+
+    private static String onDuplicateKey(Collection<String> fields, List<String> updates) {
+        StringJoiner set = new StringJoiner(", ");
+        if (updates.isEmpty()) {
+            // 没有需要更新的字段时以无效的更新代替忽略，避免insert ignore忽略其他错误
+            String field = fields.iterator().next();
+            set.add(field + " = " + field);
+        }
+        for (String update : updates) {
+            set.add(update + " = values(" + update + ")");
+        }
+        return " \non duplicate key update " + set;
+    }
+
+    /**
+     * 构建一个多行插入语句，每行的参数名以特殊字符和行号区分<br>
+     * e.g. {@code insert into t(a, b) values (:a˞0, :b˞0), (:a˞1, :b˞1)}
+     *
+     * @param tableName 表名
+     * @param fields    字段集合
+     * @param rows      行数
+     * @return 插入语句
+     * @see #getMultiValuesArgName(String, int)
+     */
+    public static String generateMultiValuesInsert(final String tableName, final Collection<String> fields, int rows) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("empty field set, generate insert sql error.");
+        }
+        StringBuilder sb = new StringBuilder("insert into ").append(tableName).append("(").append(String.join(", ", fields)).append(") \nvalues ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("(");
+            boolean first = true;
+            for (String field : fields) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append(":").append(getMultiValuesArgName(field, i));
+                first = false;
+            }
+            sb.append(")");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 获取多行插入语句中某一行的参数名
+     *
+     * @param field 字段名
+     * @param row   行号
+     * @return 参数名
+     */
+    public static String getMultiValuesArgName(String field, int row) {
+        return field + SEP + row;
+    }
+
     /**
      * 构建一个更新语句
      *
@@ -96,41 +320,316 @@ public class SqlUtil {
     }
 
     /**
-     * 获取处理参数占位符预编译的SQL
+     * 获取处理参数占位符预编译的SQL<br>
+     * 一次线性扫描完成解析，单引号字符串、双引号标识符、单行和块注释
+     * 以及PostgreSQL的美元符号引用字符串（{@code $tag$...$tag$}）中的内容保持原样，
+     * 类型转换符{@code ::}和问号操作符（如{@code ??}）也不做处理
      *
      * @param sql 带参数占位符的SQL
      * @return 预编译SQL和参数名的集合
      */
     public static Pair<String, List<String>> getPreparedSql(final String sql) {
-        // 首先处理一下sql，先暂时将sql中的单引号内子字符串去除
-        String _sql = sql;
-        List<String> strChildren = new ArrayList<>();
-        Matcher m1 = CHILD_STR_PATTERN.matcher(_sql);
-        // 检查是否有子字符串
-        int x = 0;
-        while (m1.find()) {
-            String strChild = m1.group();
-            // 为每个子字符串按顺序编号并放入缓存内
-            // 此处替换为特殊的占位符防止和用户写的冲突
-            _sql = _sql.replace(strChild, SEP + (x++) + SEP);
-            strChildren.add(strChild);
-        }
-        // 开始安全的处理参数占位符
-        Matcher matcher = ARG_PATTERN.matcher(_sql);
+        final int length = sql.length();
+        StringBuilder sb = new StringBuilder(length);
         List<String> names = new ArrayList<>();
-        while (matcher.find()) {
-            String name = matcher.group("name");
-            names.add(name);
-            // 只替换第一个的原因是为防止参数名的包含关系
-            _sql = _sql.replaceFirst(":" + name, "?");
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int end;
+            switch (c) {
+                case '\'':
+                case '"':
+                    end = sql.indexOf(c, i + 1);
+                    end = end == -1 ? length : end + 1;
+                    break;
+                case '-':
+                    if (i + 1 < length && sql.charAt(i + 1) == '-') {
+                        end = sql.indexOf('\n', i + 2);
+                        end = end == -1 ? length : end;
+                    } else {
+                        end = i + 1;
+                    }
+                    break;
+                case '/':
+                    if (i + 1 < length && sql.charAt(i + 1) == '*') {
+                        end = sql.indexOf("*/", i + 2);
+                        end = end == -1 ? length : end + 2;
+                    } else {
+                        end = i + 1;
+                    }
+                    break;
+                case '$':
+                    end = skipDollarQuoted(sql, i);
+                    break;
+                case ':':
+                    end = i + 1;
+                    if (end < length && sql.charAt(end) == ':') {
+                        // 类型转换符，连续的冒号都原样保留
+                        while (end < length && sql.charAt(end) == ':') {
+                            end++;
+                        }
+                        break;
+                    }
+                    while (end < length && isArgNameChar(sql.charAt(end))) {
+                        end++;
+                    }
+                    if (end > i + 1) {
+                        names.add(sql.substring(i + 1, end));
+                        sb.append('?');
+                        i = end;
+                        continue;
+                    }
+                    break;
+                default:
+                    end = i + 1;
+            }
+            sb.append(sql, i, end);
+            i = end;
+        }
+        return Pair.of(sb.toString(), names);
+    }
+
+    /**
+     * 构建in（或not in）条件，值按{@link #IN_CHUNK_SIZE}个拆分为多个in子句（in以or连接，not in以and连接），
+     * 每个子句的占位符数量向上取整为2的幂，不足的部分以最后一个值填充，使不同大小的集合只产生对数级别数量的不同sql；
+     * 空集合的in条件为{@code 1 = 0}，not in条件为{@code 1 = 1}<br>
+     * 占位符名为参数名前缀加{@code ˞in}和序号，e.g. {@code id in (:ids˞in0, :ids˞in1)}
+     *
+     * @param field  字段名或表达式
+     * @param not    是否为not in
+     * @param name   占位符参数名前缀
+     * @param values 值集合
+     * @param args   放入占位符参数的集合
+     * @return in条件
+     */
+    public static String inClause(String field, boolean not, String name, Collection<?> values, Map<String, Object> args) {
+        if (values.isEmpty()) {
+            return not ? "1 = 1" : "1 = 0";
+        }
+        List<?> list = values instanceof List ? (List<?>) values : new ArrayList<>(values);
+        List<String> chunks = new ArrayList<>();
+        int index = 0;
+        for (int from = 0; from < list.size(); from += IN_CHUNK_SIZE) {
+            int to = Math.min(from + IN_CHUNK_SIZE, list.size());
+            int bucket = to - from == 1 ? 1 : Math.min(Integer.highestOneBit(to - from - 1) << 1, IN_CHUNK_SIZE);
+            StringJoiner holders = new StringJoiner(", ", field + (not ? " not in (" : " in ("), ")");
+            for (int i = 0; i < bucket; i++) {
+                String argName = name + SEP + "in" + index++;
+                holders.add(":" + argName);
+                args.put(argName, list.get(Math.min(from + i, to - 1)));
+            }
+            chunks.add(holders.toString());
+        }
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        return "(" + String.join(not ? " and " : " or ", chunks) + ")";
+    }
+
+    /**
+     * 展开in子句中值为集合（或数组）的命名参数，整个条件由{@link #inClause(String, boolean, String, Collection, Map)}重新生成，
+     * e.g. {@code id in (:ids)}展开为{@code id in (:ids˞in0, :ids˞in1, ...)}，超过{@link #IN_CHUNK_SIZE}个值时拆分为多个in子句，
+     * 空集合的in条件为{@code 1 = 0}，not in条件为{@code 1 = 1}<br>
+     * 只展开单独出现在{@code in (...)}中的参数，其他位置的集合参数（例如PostgreSQL的{@code = any(:ids)}或json值）保持不变；
+     * in之前的操作数应为字段名、带引号的标识符或函数调用；字符串、注释中的内容不做处理
+     *
+     * @param sql  带参数占位符的SQL
+     * @param args 参数
+     * @return 展开后的SQL和参数，没有需要展开的参数时返回原SQL和原参数
+     */
+    public static Pair<String, Map<String, Object>> expandCollectionArgs(final String sql, final Map<String, Object> args) {
+        if (args == null || args.values().stream().noneMatch(v -> v instanceof Collection || v instanceof Object[])) {
+            return Pair.of(sql, args);
+        }
+        final int length = sql.length();
+        StringBuilder sb = new StringBuilder(length);
+        Map<String, Object> expanded = null;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int end = i + 1;
+            switch (c) {
+                case '\'':
+                case '"':
+                    end = sql.indexOf(c, i + 1);
+                    end = end == -1 ? length : end + 1;
+                    break;
+                case '-':
+                    if (i + 1 < length && sql.charAt(i + 1) == '-') {
+                        end = sql.indexOf('\n', i + 2);
+                        end = end == -1 ? length : end;
+                    }
+                    break;
+                case '/':
+                    if (i + 1 < length && sql.charAt(i + 1) == '*') {
+                        end = sql.indexOf("*/", i + 2);
+                        end = end == -1 ? length : end + 2;
+                    }
+                    break;
+                case '$':
+                    end = skipDollarQuoted(sql, i);
+                    break;
+                case ':':
+                    if (end < length && sql.charAt(end) == ':') {
+                        while (end < length && sql.charAt(end) == ':') {
+                            end++;
+                        }
+                        break;
+                    }
+                    while (end < length && isArgNameChar(sql.charAt(end))) {
+                        end++;
+                    }
+                    String name = sql.substring(i + 1, end);
+                    Object value = args.get(name);
+                    if ((value instanceof Collection || value instanceof Object[]) && isSoleInElement(sb, sql, end)) {
+                        if (expanded == null) {
+                            expanded = new HashMap<>(args);
+                        }
+                        Collection<?> values = value instanceof Collection ? (Collection<?>) value : Arrays.asList((Object[]) value);
+                        // 回退到in的操作数之前，整个条件重新生成
+                        int k = skipWhitespaceBackward(sb, skipWhitespaceBackward(sb, sb.lastIndexOf("(") - 1) - 2);
+                        boolean not = k >= 2 && sb.substring(k - 2, k + 1).equalsIgnoreCase("not") && (k == 2 || !isArgNameChar(sb.charAt(k - 3)));
+                        if (not) {
+                            k = skipWhitespaceBackward(sb, k - 3);
+                        }
+                        int start = operandStart(sb, k);
+                        if (start > k) {
+                            throw new IllegalArgumentException("can not find the operand of in clause of collection arg '" + name + "': " + sql);
+                        }
+                        String field = sb.substring(start, k + 1);
+                        sb.setLength(start);
+                        sb.append(inClause(field, not, name, values, expanded));
+                        i = sql.indexOf(')', end) + 1;
+                        continue;
+                    }
+                    break;
+                default:
+            }
+            sb.append(sql, i, end);
+            i = end;
+        }
+        if (expanded == null) {
+            return Pair.of(sql, args);
+        }
+        return Pair.of(sb.toString(), expanded);
+    }
+
+    /**
+     * 从指定位置向前跳过空白字符
+     *
+     * @param s 字符序列
+     * @param i 开始位置
+     * @return 第一个非空白字符的位置，没有则为-1
+     */
+    private static int skipWhitespaceBackward(CharSequence s, int i) {
+        while (i >= 0 && Character.isWhitespace(s.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * 从操作数的最后一个字符向前查找操作数的开始位置，操作数为标识符（可带引号和限定名）或函数调用
+     *
+     * @param sb  sql
+     * @param end 操作数的最后一个字符的位置
+     * @return 操作数的开始位置，大于end则没有操作数
+     */
+    private static int operandStart(StringBuilder sb, int end) {
+        int k = end;
+        while (k >= 0) {
+            char c = sb.charAt(k);
+            if (c == ')') {
+                int depth = 0;
+                while (k >= 0) {
+                    char d = sb.charAt(k);
+                    if (d == ')') {
+                        depth++;
+                    } else if (d == '(' && --depth == 0) {
+                        break;
+                    }
+                    k--;
+                }
+                k--;
+            } else if (c == '"' || c == '`') {
+                k = sb.lastIndexOf(String.valueOf(c), k - 1) - 1;
+            } else if (isArgNameChar(c) || c == '$') {
+                k--;
+            } else {
+                break;
+            }
         }
+        return Math.max(k + 1, 0);
+    }
 
-        // 最后再将一开始移除的子字符串重新放回到sql中
-        for (int i = 0; i < strChildren.size(); i++) {
-            _sql = _sql.replace(SEP + i + SEP, strChildren.get(i));
+    /**
+     * 判断参数是否单独出现在in子句的括号中
+     *
+     * @param before 参数之前的sql
+     * @param sql    sql
+     * @param end    参数结束后的位置
+     * @return 是否是in子句的唯一元素
+     */
+    private static boolean isSoleInElement(CharSequence before, String sql, int end) {
+        while (end < sql.length() && Character.isWhitespace(sql.charAt(end))) {
+            end++;
+        }
+        if (end >= sql.length() || sql.charAt(end) != ')') {
+            return false;
+        }
+        int i = before.length() - 1;
+        while (i >= 0 && Character.isWhitespace(before.charAt(i))) {
+            i--;
         }
+        if (i < 0 || before.charAt(i) != '(') {
+            return false;
+        }
+        i--;
+        while (i >= 0 && Character.isWhitespace(before.charAt(i))) {
+            i--;
+        }
+        return i >= 1 && Character.toLowerCase(before.charAt(i)) == 'n' && Character.toLowerCase(before.charAt(i - 1)) == 'i' &&
+                (i == 1 || !isArgNameChar(before.charAt(i - 2)));
+    }
 
-        return Pair.of(_sql, names);
+    /**
+     * 判断是否是命名参数名的合法字符
+     *
+     * @param c 字符
+     * @return 是否合法
+     */
+    private static boolean isArgNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.' || c == SEP.charAt(0);
+    }
+
+    /**
+     * 跳过PostgreSQL的美元符号引用字符串（{@code $$...$$}或{@code $tag$...$tag$}）
+     *
+     * @param sql   sql
+     * @param start 美元符号的位置
+     * @return 引用字符串结束后的位置，如果不是美元符号引用字符串，则返回下一个位置
+     */
+    private static int skipDollarQuoted(final String sql, final int start) {
+        // 美元符号在标识符中间（例如 a$b）时不是引用字符串的开始
+        if (start > 0) {
+            char prev = sql.charAt(start - 1);
+            if (Character.isLetterOrDigit(prev) || prev == '_' || prev == '$') {
+                return start + 1;
+            }
+        }
+        int i = start + 1;
+        if (i < sql.length() && (Character.isLetter(sql.charAt(i)) || sql.charAt(i) == '_')) {
+            i++;
+            while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+                i++;
+            }
+        }
+        if (i >= sql.length() || sql.charAt(i) != '$') {
+            return start + 1;
+        }
+        String tag = sql.substring(start, i + 1);
+        int end = sql.indexOf(tag, i + 1);
+        return end == -1 ? sql.length() : end + tag.length();
     }
 
     /**
@@ -144,7 +643,8 @@ public class SqlUtil {
     }
 
     /**
-     * 解析SQL字符串
+     * 解析SQL字符串，一次扫描替换所有的字符串模版占位符（{@code ${...}}）<br>
+     * 每条sql的占位符位置只计算一次并缓存
      *
      * @param sourceSql 原始sql字符串
      * @param args      参数
@@ -154,90 +654,127 @@ public class SqlUtil {
         if (args == null || args.size() == 0) {
             return sourceSql;
         }
-        String sql = sourceSql;
-        for (String key : args.keySet()) {
-            if (key.startsWith("${") && key.endsWith("}")) {
-                String v = " " + args.get(key).toString() + " ";
-                sql = sql.replace(key, v);
+        if (!sourceSql.contains("${")) {
+            return sourceSql;
+        }
+        int[] positions = SQL_PART_POSITIONS.computeIfAbsent(sourceSql, SqlUtil::findSqlPartPositions);
+        if (positions.length == 0) {
+            return sourceSql;
+        }
+        StringBuilder sb = new StringBuilder(sourceSql.length());
+        int last = 0;
+        for (int i = 0; i < positions.length; i += 2) {
+            String key = sourceSql.substring(positions[i], positions[i + 1]);
+            if (args.containsKey(key)) {
+                sb.append(sourceSql, last, positions[i])
+                        .append(" ").append(args.get(key).toString()).append(" ");
+                last = positions[i + 1];
             }
         }
-        return sql;
+        if (last == 0) {
+            return sourceSql;
+        }
+        return sb.append(sourceSql, last, sourceSql.length()).toString();
     }
 
     /**
-     * 根据解析条件表达式的结果动态生成sql<br>
+     * 查找sql中所有字符串模版占位符（{@code ${...}}）的位置
+     *
+     * @param sql sql
+     * @return 依次为每个占位符的开始和结束位置
+     */
+    private static int[] findSqlPartPositions(final String sql) {
+        List<Integer> positions = new ArrayList<>();
+        int start = sql.indexOf("${");
+        while (start != -1) {
+            int end = sql.indexOf('}', start + 2);
+            if (end == -1) {
+                break;
+            }
+            positions.add(start);
+            positions.add(end + 1);
+            start = sql.indexOf("${", end + 1);
+        }
+        int[] arr = new int[positions.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = positions.get(i);
+        }
+        return arr;
+    }
+
+    /**
+     * 根据解析条件表达式的结果动态生成sql，相同的sql只预编译一次<br>
      * e.g. data.sql.template
      *
      * @param sql     sql
      * @param argsMap 参数字典
      * @return 解析后的sql
      * @see CExpression
+     * @see DynamicSqlTemplate
      */
     public static String dynamicSql(final String sql, Map<String, Object> argsMap) {
         if (argsMap == null || argsMap.isEmpty()) {
             return sql;
         }
-        if (!sql.contains("--#if") || !sql.contains("--#fi")) {
-            return sql;
-        }
-        String[] lines = sql.split("\n");
-        StringBuilder sb = new StringBuilder();
-        String firstLine = "";
-        boolean first = true;
-        boolean skip = true;
-        boolean start = false;
-        for (String line : lines) {
-            String trimLine = line.trim();
-            if (first) {
-                firstLine = trimLine;
-                first = false;
+        return DYNAMIC_SQL_TEMPLATES.computeIfAbsent(sql, DynamicSqlTemplate::compile).render(argsMap);
+    }
+
+    /**
+     * 大致解析查询语句中from和join子句引用的表名（包括子查询中的表），忽略字符串和注释中的内容<br>
+     * 表名去除引号并转为小写，from之后紧跟子查询或函数时不计入
+     *
+     * @param sql sql
+     * @return 表名集合
+     */
+    public static Set<String> getQueryTableNames(final String sql) {
+        Set<String> tables = new LinkedHashSet<>();
+        Matcher m = QUERY_TABLE_PATTERN.matcher(stripLiterals(sql));
+        while (m.find()) {
+            if (m.group(1) != null) {
+                for (String table : m.group(1).split(",")) {
+                    tables.add(normalizeTableName(table.trim().split("\\s+")[0]));
+                }
+            } else {
+                tables.add(normalizeTableName(m.group(2)));
             }
-            if (trimLine.startsWith("--#if") && !start) {
-                String filter = trimLine.substring(5);
-                CExpression expression = CExpression.of(filter);
-                skip = expression.calc(argsMap);
-                start = true;
-                continue;
-            }
-            if (trimLine.startsWith("--#fi") && start) {
-                skip = true;
-                start = false;
-                continue;
-            }
-            if (skip) {
-                sb.append(line).append("\n");
-            }
-        }
-        String dSql = sb.toString();
-        Pattern p;
-        Matcher m;
-        // if update statement
-        if (firstLine.startsWith("update")) {
-            p = Pattern.compile(",\\s*where", Pattern.CASE_INSENSITIVE);
-            m = p.matcher(dSql);
-            if (m.find()) {
-                dSql = dSql.substring(0, m.start()).concat(dSql.substring(m.start() + 1));
-            }
-        }
-        // "where and" statement
-        p = Pattern.compile("where\\s+(and|or)\\s+", Pattern.CASE_INSENSITIVE);
-        m = p.matcher(dSql);
-        if (m.find()) {
-            return dSql.substring(0, m.start() + 6).concat(dSql.substring(m.end()));
-        }
-        // if "where order by ..." statement
-        p = Pattern.compile("where\\s+(order by|limit|group by|union)\\s+", Pattern.CASE_INSENSITIVE);
-        m = p.matcher(dSql);
-        if (m.find()) {
-            return dSql.substring(0, m.start()).concat(dSql.substring(m.start() + 6));
-        }
-        // if "where" at end
-        p = Pattern.compile("where\\s*$", Pattern.CASE_INSENSITIVE);
-        m = p.matcher(dSql);
-        if (m.find()) {
-            return dSql.substring(0, m.start());
-        }
-        return dSql;
+        }
+        return tables;
+    }
+
+    /**
+     * 大致解析语句中写操作（insert，update，delete，merge，truncate，drop/alter table）的目标表名，忽略字符串和注释中的内容<br>
+     * 表名去除引号并转为小写，解析结果可能包含多余的名字（例如{@code on duplicate key update}之后的字段名），只用于判断数据是否可能被修改
+     *
+     * @param sql sql
+     * @return 表名集合，不是写操作则为空
+     */
+    public static Set<String> getModifiedTableNames(final String sql) {
+        Set<String> tables = new LinkedHashSet<>();
+        Matcher m = MODIFIED_TABLE_PATTERN.matcher(stripLiterals(sql));
+        while (m.find()) {
+            tables.add(normalizeTableName(m.group(1)));
+        }
+        return tables;
+    }
+
+    /**
+     * 去除sql中的注释和字符串内容
+     *
+     * @param sql sql
+     * @return 处理后的sql
+     */
+    private static String stripLiterals(final String sql) {
+        return CHILD_STR_PATTERN.matcher(COMMENT_PATTERN.matcher(sql).replaceAll(" ")).replaceAll("''");
+    }
+
+    /**
+     * 去除表名中的引号并转为小写
+     *
+     * @param table 表名
+     * @return 规范的表名
+     */
+    public static String normalizeTableName(final String table) {
+        return table.replaceAll("[\"`\\[\\]]", "").toLowerCase();
     }
 
     /**
@@ -0,0 +1,68 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.common.types.DataRow;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.AsyncBakiDao;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.transaction.Definition;
+import rabbit.sql.transaction.Level;
+import rabbit.sql.transaction.Tx;
+import rabbit.sql.types.DataFrame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncBakiTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void asyncBaki() throws Exception {
+        baki.execute("delete from user");
+        try (AsyncBakiDao async = AsyncBakiDao.of(baki)) {
+            assertEquals(1000, (int) async.insert(DataFrame.of("user", SqliteMem.users(0, 1000))).get());
+            List<CompletableFuture<List<DataRow>>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(async.query("select * from user where age = :age", Args.create().add("age", i)));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            for (CompletableFuture<List<DataRow>> f : futures) {
+                assertEquals(10, f.get().size());
+            }
+            assertTrue(async.getMaxConcurrency() > 0);
+
+            Definition serializable = Definition.defaultDefinition();
+            serializable.setLevel(Level.SERIALIZABLE);
+            String caller = Thread.currentThread().getName();
+            String worker = Tx.using(() -> async.submit(b -> {
+                b.execute("delete from user where id = 0");
+                return Thread.currentThread().getName();
+            }).join(), serializable);
+            assertEquals(caller, worker);
+            assertFalse(async.exists("select * from user where id = 0").get());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.common.types.DataRow;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.support.BatchExecuteException;
+import rabbit.sql.types.DataFrame;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchInsertTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void bindingPlan() throws Exception {
+        baki.execute("delete from user");
+        int count = baki.insert(DataFrame.of("user", SqliteMem.users(0, 100)));
+        assertEquals(100, count);
+        long sqlHits = baki.getPreparedSqlCacheStats().getHitCount();
+        long planHits = baki.getBindingPlanCacheStats().getHitCount();
+        for (int i = 0; i < 10; i++) {
+            try (Stream<DataRow> s = baki.query("select * from user where age > :age", Args.create().add("age", 90))) {
+                assertEquals(9, s.collect(Collectors.toList()).size());
+            }
+        }
+        assertTrue(baki.getPreparedSqlCacheStats().getHitCount() - sqlHits >= 9);
+        assertTrue(baki.getBindingPlanCacheStats().getHitCount() - planHits >= 9);
+    }
+
+    @Test
+    public void batchInsert() throws Exception {
+        baki.execute("delete from user");
+        baki.setBatchSize(300);
+        assertEquals(1000, baki.insert(DataFrame.of("user", SqliteMem.users(0, 1000))));
+        List<Map<String, Object>> rows = SqliteMem.users(1000, 1000);
+        rows.set(700, SqliteMem.users(5, 1).get(0));
+        try {
+            baki.insert(DataFrame.of("user", rows));
+            fail();
+        } catch (BatchExecuteException e) {
+            assertEquals(2, e.getBatchIndex());
+            assertEquals(600, e.getFromRow());
+            assertEquals(900, e.getToRow());
+        } finally {
+            baki.setBatchSize(1000);
+        }
+    }
+
+    @Test
+    public void multiValuesInsert() throws Exception {
+        baki.execute("delete from user");
+        assertEquals(1000, baki.insert(DataFrame.of("user", SqliteMem.users(0, 1000)).multiValues(500)));
+        assertEquals(Integer.valueOf(1000), baki.fetch("select count(*) from user").get().getInt(0));
+        assertEquals("user999", baki.fetch("select name from user where id = :id", Args.create().add("id", 999)).get().getString(0));
+    }
+
+    @Test
+    public void generatedKeys() throws Exception {
+        baki.execute("create table if not exists key_test(id integer primary key autoincrement, name text)");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rows.add(Args.of("name", "n" + i));
+        }
+        long[] ids = baki.insertReturningIds(DataFrame.of("key_test", rows), "id");
+        assertEquals(50, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals("n" + i, baki.fetch("select name from key_test where id = " + ids[i]).get().getString("name"));
+        }
+        List<DataRow> keys = baki.insertReturningKeys(DataFrame.of("key_test", Args.of("name", "last")));
+        assertEquals(ids[49] + 1, ((Number) keys.get(0).get(0)).longValue());
+        // 驱动是否支持批量返回生成键只检查一次
+        AtomicInteger metaData = new AtomicInteger();
+        BakiDao counting = BakiDao.of((DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class[]{DataSource.class}, (proxy, method, args) -> {
+            Object result = SqliteMem.invoke(ds, method, args);
+            if (!method.getName().equals("getConnection")) {
+                return result;
+            }
+            Connection connection = (Connection) result;
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (p, m, a) -> {
+                if (m.getName().equals("getMetaData")) {
+                    metaData.incrementAndGet();
+                }
+                return SqliteMem.invoke(connection, m, a);
+            });
+        }));
+        assertEquals(50, counting.insertReturningIds(DataFrame.of("key_test", rows), "id").length);
+        int probed = metaData.get();
+        assertEquals(50, counting.insertReturningIds(DataFrame.of("key_test", rows), "id").length);
+        assertEquals(probed, metaData.get());
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+}
@@ -0,0 +1,76 @@
+package tests;
+
+import org.junit.Test;
+import rabbit.sql.cache.BoundedCache;
+import rabbit.sql.cache.Eviction;
+import rabbit.sql.cache.StatsCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void lru() throws Exception {
+        List<String> removed = new ArrayList<>();
+        BoundedCache<String, Integer> cache = new BoundedCache<>(3, Eviction.LRU, new StatsCounter(), (k, v) -> removed.add(k));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        Thread.sleep(1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.stats().getEvictionCount());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(4, removed.size());
+        assertEquals("b", removed.get(0));
+    }
+
+    @Test
+    public void fifo() throws Exception {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, Eviction.FIFO);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        Thread.sleep(1);
+        cache.get("a");
+        cache.put("c", 3);
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(64, Eviction.LRU);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    int key = (i * 31 + seed) % 100;
+                    assertEquals(Integer.valueOf(key * 2), cache.computeIfAbsent(key, k -> k * 2));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(cache.size() <= 64);
+        assertEquals(8 * 20000, cache.stats().getHitCount() + cache.stats().getMissCount());
+    }
+}
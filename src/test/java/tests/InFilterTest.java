@@ -0,0 +1,157 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.common.types.DataRow;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.dao.Condition;
+import rabbit.sql.dao.Filter;
+import rabbit.sql.support.IFilter;
+import rabbit.sql.transaction.Definition;
+import rabbit.sql.transaction.Level;
+import rabbit.sql.transaction.Tx;
+import rabbit.sql.types.DataFrame;
+import rabbit.sql.utils.SqlUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InFilterTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void inFilter() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 3000)));
+        List<Integer> ids = Arrays.asList(1, 2, 3, 5, 8);
+        Condition cnd = Condition.where(Filter.in("id", ids)).and(Filter.notIn("id", Collections.singletonList(2)));
+        assertEquals(9, cnd.getArgs().size());
+        try (Stream<DataRow> s = baki.query("select * from user" + cnd.getSql(), cnd.getArgs())) {
+            assertEquals(4, s.count());
+        }
+        List<Integer> many = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            many.add(i * 2);
+        }
+        Definition definition = Definition.defaultDefinition();
+        definition.setLevel(Level.SERIALIZABLE);
+        long count = Tx.using(() -> baki.withInFilter("id", many, filter -> {
+            Condition c = Condition.where(filter);
+            try (Stream<DataRow> s = baki.query("select * from user" + c.getSql(), c.getArgs())) {
+                return s.count();
+            }
+        }), definition);
+        assertEquals(1500, count);
+        // 同一事务中临时表使用固定表名，每次使用前清空，嵌套使用时回退为in条件
+        List<Integer> odd = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            odd.add(i * 2 + 1);
+        }
+        long[] counts = Tx.using(() -> {
+            long first = baki.withInFilter("id", many, filter -> count(filter));
+            long second = baki.withInFilter("id", odd, filter -> {
+                long nested = baki.withInFilter("id", many, inner -> count(Condition.where(filter).and(inner)));
+                return count(filter) * 10000 + nested;
+            });
+            long tables;
+            try (Stream<DataRow> s = baki.query("select * from sqlite_temp_master where type = 'table'")) {
+                tables = s.count();
+            }
+            return new long[]{first, second, tables};
+        }, definition);
+        assertEquals(1500, counts[0]);
+        assertEquals(1200 * 10000, counts[1]);
+        assertEquals(1, counts[2]);
+        count = baki.withInFilter("id", ids, filter -> {
+            Condition c = Condition.where(filter);
+            try (Stream<DataRow> s = baki.query("select * from user" + c.getSql(), c.getArgs())) {
+                return s.count();
+            }
+        });
+        assertEquals(5, count);
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    static long count(IFilter filter) {
+        return count(Condition.where(filter));
+    }
+
+    static long count(Condition condition) {
+        try (Stream<DataRow> s = baki.query("select * from user" + condition.getSql(), condition.getArgs())) {
+            return s.count();
+        }
+    }
+
+    @Test
+    public void collectionArgs() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 20)));
+        for (int n = 0; n <= 16; n++) {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                ids.add(i);
+            }
+            try (Stream<DataRow> s = baki.query("select * from user where id in (:ids) and name != ':ids'", Args.of("ids", ids))) {
+                assertEquals(n, s.count());
+            }
+        }
+        assertEquals("select :ids", SqlUtil.expandCollectionArgs("select :ids", Args.of("ids", Arrays.asList(1, 2))).getItem1());
+        assertEquals("select * from t where t.\"id\" in (:ids˞in0, :ids˞in1, :ids˞in2, :ids˞in3) or id = any(:ids) -- in (:ids)",
+                SqlUtil.expandCollectionArgs("select * from t where t.\"id\" in ( :ids ) or id = any(:ids) -- in (:ids)", Args.of("ids", Arrays.asList(1, 2, 3))).getItem1());
+        assertEquals("select * from t where lower(name) not in (:names˞in0)",
+                SqlUtil.expandCollectionArgs("select * from t where lower(name) NOT IN (:names)", Args.of("names", Collections.singletonList("a"))).getItem1());
+        // 空集合：in恒为假，not in恒为真
+        assertEquals("select * from t where 1 = 0 and 1 = 1",
+                SqlUtil.expandCollectionArgs("select * from t where id in (:a) and id not in (:b)", Args.<Object>of("a", Collections.emptyList()).add("b", new Object[0])).getItem1());
+        try (Stream<DataRow> s = baki.query("select * from user where id in (:ids)", Args.of("ids", Collections.emptyList()))) {
+            assertEquals(0, s.count());
+        }
+        try (Stream<DataRow> s = baki.query("select * from user where id not in (:ids)", Args.of("ids", Collections.emptyList()))) {
+            assertEquals(20, s.count());
+        }
+        // 超过512个值时拆分为多个in子句，与Condition使用同一种展开方式
+        List<Integer> many = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            many.add(i);
+        }
+        String expanded = SqlUtil.expandCollectionArgs("select * from user where id in (:ids)", Args.of("ids", many)).getItem1();
+        assertTrue(expanded.startsWith("select * from user where (id in (:ids˞in0, "));
+        assertTrue(expanded.contains(":ids˞in511) or id in (:ids˞in512, "));
+        assertTrue(expanded.endsWith(":ids˞in1023))"));
+        Condition cnd = Condition.where(Filter.in("id", many));
+        assertEquals("\n where " + expanded.substring(expanded.indexOf('(')).replace(":ids˞", ":id˞0˞") + " ", cnd.getSql());
+        try (Stream<DataRow> s = baki.query("select * from user where id in (:ids)", Args.of("ids", many))) {
+            assertEquals(20, s.count());
+        }
+        try (Stream<DataRow> s = baki.query("select * from user where id not in (:ids)", Args.of("ids", many.subList(5, 1000)))) {
+            assertEquals(5, s.count());
+        }
+        assertEquals("\n where 1 = 0 ", Condition.where(Filter.in("id", Collections.emptyList())).getSql());
+        assertEquals(3, (int) baki.execute("delete from user where id in (:ids)", Args.of("ids", Arrays.asList(1, 2, 3))).getInt("result"));
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+}
@@ -0,0 +1,97 @@
+package tests;
+
+import org.junit.Test;
+import rabbit.common.tuple.Pair;
+import rabbit.sql.utils.SqlUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+
+public class PreparedSqlTest {
+
+    /**
+     * 原来基于正则的实现，用来对比解析结果
+     */
+    static Pair<String, List<String>> regexPreparedSql(final String sql) {
+        String _sql = sql;
+        List<String> strChildren = new ArrayList<>();
+        Matcher m1 = SqlUtil.CHILD_STR_PATTERN.matcher(_sql);
+        int x = 0;
+        while (m1.find()) {
+            String strChild = m1.group();
+            _sql = _sql.replace(strChild, SqlUtil.SEP + (x++) + SqlUtil.SEP);
+            strChildren.add(strChild);
+        }
+        Matcher matcher = SqlUtil.ARG_PATTERN.matcher(_sql);
+        List<String> names = new ArrayList<>();
+        while (matcher.find()) {
+            String name = matcher.group("name");
+            names.add(name);
+            _sql = _sql.replaceFirst(":" + name, "?");
+        }
+        for (int i = 0; i < strChildren.size(); i++) {
+            _sql = _sql.replace(SqlUtil.SEP + i + SqlUtil.SEP, strChildren.get(i));
+        }
+        return Pair.of(_sql, names);
+    }
+
+    @Test
+    public void sameAsRegex() throws Exception {
+        String[] sqls = new String[]{
+                ":res = call getUser(:id, :name)",
+                "select t.id || 'number' || 'name:cyx','{\"name\": \"user\"}'::jsonb from test.user t where id = :id::integer and id > :idc and name = text :username and '[\"a\",\"b\",\"c\"]'::jsonb ??& array ['a', 'b']",
+                "insert into test.user(id, name, password) values (:id, :name, :password)",
+                "update test.user set name = :name,\n\t age = :age\n where id = :id" + SqlUtil.SEP + "0 and x = 'it''s :not'",
+                "select * from a where x = :a.b and y=:c"
+        };
+        for (String sql : sqls) {
+            Pair<String, List<String>> expected = regexPreparedSql(sql);
+            Pair<String, List<String>> actual = SqlUtil.getPreparedSql(sql);
+            assertEquals(expected.getItem1(), actual.getItem1());
+            assertEquals(expected.getItem2(), actual.getItem2());
+        }
+    }
+
+    @Test
+    public void lexer() throws Exception {
+        String sql = "select \"a:b\", $$ :x $$, $fn$ select :y $fn$ -- :comment\n" +
+                "from t /* :block */ where a = :a and b::text = :b and c ?? 'x' and d = $1";
+        Pair<String, List<String>> pair = SqlUtil.getPreparedSql(sql);
+        assertEquals("select \"a:b\", $$ :x $$, $fn$ select :y $fn$ -- :comment\n" +
+                "from t /* :block */ where a = ? and b::text = ? and c ?? 'x' and d = $1", pair.getItem1());
+        assertEquals(Arrays.asList("a", "b"), pair.getItem2());
+    }
+
+    @Test
+    public void sqlPart() throws Exception {
+        String sql = "select ${fields} from test.user t where ${cnd} and x = '${keep}'";
+        Map<String, Object> args = new HashMap<>();
+        args.put("${fields}", "t.id, t.name");
+        args.put("${cnd}", "t.id > :id");
+        args.put("id", 5);
+        String resolved = SqlUtil.resolveSqlPart(sql, args);
+        assertEquals("select  t.id, t.name  from test.user t where  t.id > :id  and x = '${keep}'", resolved);
+        assertEquals(resolved, SqlUtil.resolveSqlPart(sql, args));
+        assertEquals("select * from t", SqlUtil.resolveSqlPart("select * from t", args));
+    }
+
+    @Test
+    public void largeSqlSameAsRegex() throws Exception {
+        StringBuilder sb = new StringBuilder("select * from test.report t where 1 = 1");
+        for (int i = 0; i < 200; i++) {
+            sb.append("\n and t.col").append(i).append(" = :arg").append(i).append(" and t.name").append(i).append(" <> 'name:").append(i).append("'");
+        }
+        String sql = sb.toString();
+        Pair<String, List<String>> expected = regexPreparedSql(sql);
+        Pair<String, List<String>> actual = SqlUtil.getPreparedSql(sql);
+        assertEquals(expected.getItem1(), actual.getItem1());
+        assertEquals(expected.getItem2(), actual.getItem2());
+        assertEquals(200, actual.getItem2().size());
+    }
+}
@@ -0,0 +1,182 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.common.types.DataRow;
+import rabbit.sql.cache.Eviction;
+import rabbit.sql.cache.ResultCache;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.dao.Condition;
+import rabbit.sql.dao.Filter;
+import rabbit.sql.transaction.Definition;
+import rabbit.sql.transaction.Level;
+import rabbit.sql.transaction.Tx;
+import rabbit.sql.types.DataFrame;
+import rabbit.sql.utils.SqlUtil;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryCacheTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void resultCache() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 10)));
+        ResultCache cache = new ResultCache(2, Eviction.LRU);
+        cache.cacheTable("user", 1, TimeUnit.MINUTES);
+        BakiDao cached = BakiDao.of(ds);
+        cached.setResultCache(cache);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("user1", cached.fetch("select * from user where id = :id", Args.of("id", 1)).get().getString("name"));
+        }
+        try (Stream<DataRow> s = cached.query("select * from user")) {
+            assertEquals(10, s.count());
+        }
+        // 修改返回的结果行不影响缓存
+        cached.fetch("select * from user where id = :id", Args.of("id", 1)).get().getValues().set(1, "modified");
+        assertEquals("user1", cached.fetch("select * from user where id = :id", Args.of("id", 1)).get().getString("name"));
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+        cached.update("user", Args.of("name", "changed"), Condition.where(Filter.eq("id", 1)));
+        assertEquals("changed", cached.fetch("select * from user where id = :id", Args.of("id", 1)).get().getString("name"));
+        cached.execute("delete from user where id > 5");
+        try (Stream<DataRow> s = cached.query("select * from user")) {
+            assertEquals(6, s.count());
+        }
+        cached.fetch("select * from user where id = :id", Args.of("id", 2));
+        assertEquals(4, cache.stats().getHitCount());
+        assertEquals(5, cache.stats().getMissCount());
+        assertEquals(1, cache.stats().getEvictionCount());
+        assertEquals(new HashSet<>(Arrays.asList("test.a", "b", "c", "d")), SqlUtil.getQueryTableNames("select * from test.a t, \"b\" join c on c.id = t.id where x in (select y from d)"));
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void resultCacheSqlPart() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 3)));
+        baki.execute("create table if not exists region(id int, name varchar(50))");
+        baki.execute("delete from region");
+        baki.execute("insert into region values (1, 'east')");
+        ResultCache cache = new ResultCache(16, Eviction.LRU);
+        cache.cacheTable("user", 1, TimeUnit.MINUTES);
+        cache.cacheTable("region", 1, TimeUnit.MINUTES);
+        BakiDao cached = BakiDao.of(ds);
+        cached.setResultCache(cache);
+        // region表只出现在${}片段中，按解析后的sql判断引用的表
+        String sql = "select r.name from user u ${join} where u.id = :id";
+        Args<Object> args = Args.<Object>of("id", 1).add("${join}", "join region r on r.id = u.id");
+        assertEquals("east", cached.fetch(sql, args).get().getString("name"));
+        assertEquals("east", cached.fetch(sql, args).get().getString("name"));
+        assertEquals(1, cache.stats().getHitCount());
+        cached.execute("update region set name = 'west' where id = 1");
+        assertEquals("west", cached.fetch(sql, args).get().getString("name"));
+        // 片段引入未注册的表时不缓存
+        baki.execute("create table if not exists other(id int, name varchar(50))");
+        Args<Object> other = Args.<Object>of("id", 1).add("${join}", "join other r on r.id = u.id");
+        cached.fetch(sql, other);
+        assertEquals(1, cache.stats().getSize());
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void resultCacheFailedLoad() throws Exception {
+        ResultCache cache = new ResultCache(16, Eviction.LRU);
+        cache.cacheTable("late", 1, TimeUnit.MINUTES);
+        BakiDao cached = BakiDao.of(ds);
+        cached.setResultCache(cache);
+        baki.execute("drop table if exists late");
+        // 查询失败时抛出异常，不缓存空结果
+        try {
+            cached.query("select * from late");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+        assertEquals(0, cache.stats().getSize());
+        baki.execute("create table late(id int)");
+        baki.execute("insert into late values (1)");
+        try (Stream<DataRow> s = cached.query("select * from late")) {
+            assertEquals(1, s.count());
+        }
+        assertEquals(1, cache.stats().getSize());
+        baki.execute("drop table late");
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void transactionCache() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 10)));
+        BakiDao cached = BakiDao.of(ds);
+        cached.setTransactionCacheSize(16);
+        Definition definition = Definition.defaultDefinition();
+        definition.setLevel(Level.SERIALIZABLE);
+        String name = Tx.using(() -> {
+            for (int i = 0; i < 3; i++) {
+                assertEquals("user1", cached.fetch("select * from user where id = :id", Args.of("id", 1)).get().getString("name"));
+                cached.fetch("select * from user where id = :id", Args.of("id", 1)).get().getValues().set(1, "modified");
+            }
+            cached.update("user", Args.of("name", "tx"), Condition.where(Filter.eq("id", 1)));
+            return cached.fetch("select * from user where id = :id", Args.of("id", 1)).get().getString("name");
+        }, definition);
+        assertEquals("tx", name);
+        assertEquals(5, cached.getTransactionCacheStats().getHitCount());
+        assertEquals(2, cached.getTransactionCacheStats().getMissCount());
+        // 事务外不缓存
+        cached.fetch("select * from user where id = :id", Args.of("id", 1));
+        assertEquals(2, cached.getTransactionCacheStats().getMissCount());
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void transactionCacheFailedLoad() throws Exception {
+        BakiDao cached = BakiDao.of(ds);
+        cached.setTransactionCacheSize(16);
+        Definition definition = Definition.defaultDefinition();
+        definition.setLevel(Level.SERIALIZABLE);
+        // 查询失败时每次都抛出异常，不缓存空结果
+        int failures = Tx.using(() -> {
+            int count = 0;
+            for (int i = 0; i < 2; i++) {
+                try {
+                    cached.query("select * from missing");
+                } catch (RuntimeException e) {
+                    assertTrue(e.getCause() instanceof SQLException);
+                    count++;
+                }
+            }
+            return count;
+        }, definition);
+        assertEquals(2, failures);
+        assertEquals(0, cached.getTransactionCacheStats().getHitCount());
+        assertEquals(2, cached.getTransactionCacheStats().getMissCount());
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+}
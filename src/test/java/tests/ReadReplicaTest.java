@@ -0,0 +1,168 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.common.types.DataRow;
+import rabbit.sql.cache.Eviction;
+import rabbit.sql.cache.ResultCache;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.dao.Condition;
+import rabbit.sql.dao.Filter;
+import rabbit.sql.datasource.LoadBalance;
+import rabbit.sql.datasource.ReplicaSet;
+import rabbit.sql.transaction.Definition;
+import rabbit.sql.transaction.Level;
+import rabbit.sql.transaction.Tx;
+import rabbit.sql.types.DataFrame;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReadReplicaTest {
+
+    static HikariDataSource ds;
+    static HikariDataSource replicaDs;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 10)));
+        replicaDs = SqliteMem.dataSource();
+        BakiDao replicaBaki = BakiDao.of(replicaDs);
+        SqliteMem.createUserTable(replicaBaki);
+        replicaBaki.insert(DataFrame.of("user", Collections.singletonList(Args.<Object>of("id", 1).add("name", "replica").add("age", 1))));
+    }
+
+    @AfterClass
+    public static void destroy() {
+        replicaDs.close();
+        ds.close();
+    }
+
+    static Clock at(long millis) {
+        return Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    /**
+     * sqlite不能修改已打开连接的只读标志，记录只读设置而不传给驱动
+     */
+    static DataSource ignoringReadOnly(DataSource dataSource, List<Boolean> readOnlys) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class[]{DataSource.class}, (proxy, method, args) -> {
+            Object result = SqliteMem.invoke(dataSource, method, args);
+            if (!method.getName().equals("getConnection")) {
+                return result;
+            }
+            Connection connection = (Connection) result;
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (p, m, a) -> {
+                if (m.getName().equals("setReadOnly")) {
+                    readOnlys.add((Boolean) a[0]);
+                    return null;
+                }
+                return SqliteMem.invoke(connection, m, a);
+            });
+        });
+    }
+
+    static String name(BakiDao baki) {
+        return baki.fetch("select * from user where id = :id", Args.of("id", 1)).get().getString("name");
+    }
+
+    @Test
+    public void readReplica() throws Exception {
+        baki.update("user", Args.of("name", "primary"), Condition.where(Filter.eq("id", 1)));
+        ReplicaSet replicas = new ReplicaSet(LoadBalance.LEAST_IN_FLIGHT, replicaDs);
+        replicas.setPinWindow(300, TimeUnit.MILLISECONDS);
+        replicas.setMaxLag(1, TimeUnit.SECONDS);
+        replicas.setClock(at(1000));
+        BakiDao routed = BakiDao.of(ds);
+        routed.setReplicas(replicas);
+        assertEquals("replica", name(routed));
+        try (Stream<DataRow> s = routed.query("select * from user")) {
+            assertEquals(1, replicas.getInFlight(replicaDs));
+            assertEquals(1, s.count());
+        }
+        assertEquals(0, replicas.getInFlight(replicaDs));
+        // 命中结果缓存时不选择从库
+        ResultCache cache = new ResultCache(16, Eviction.LRU);
+        cache.cacheTable("user", 1, TimeUnit.MINUTES);
+        routed.setResultCache(cache);
+        assertEquals("replica", name(routed));
+        try (Stream<DataRow> s = routed.query("select * from user where id = :id", Args.of("id", 1))) {
+            assertEquals(0, replicas.getInFlight(replicaDs));
+            assertEquals("replica", s.findFirst().get().getString("name"));
+        }
+        assertEquals(1, cache.stats().getHitCount());
+        routed.setResultCache(null);
+        // 写操作之后的时间窗口内固定在主库
+        routed.update("user", Args.of("age", 2), Condition.where(Filter.eq("id", 1)));
+        assertEquals("primary", name(routed));
+        replicas.setClock(at(1299));
+        assertEquals("primary", name(routed));
+        replicas.setClock(at(1300));
+        assertEquals("replica", name(routed));
+        // 延迟过大的从库不可用
+        replicas.reportLag(replicaDs, 5000);
+        assertEquals("primary", name(routed));
+        replicas.reportLag(replicaDs, 0);
+        // 非只读事务在主库执行
+        Definition definition = Definition.defaultDefinition();
+        definition.setLevel(Level.SERIALIZABLE);
+        assertEquals("primary", Tx.using(() -> name(routed), definition));
+        assertEquals(0, replicas.getInFlight(replicaDs));
+        assertEquals(0, replicaDs.getHikariPoolMXBean().getActiveConnections());
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void readOnlyTransaction() throws Exception {
+        baki.update("user", Args.of("name", "primary"), Condition.where(Filter.eq("id", 1)));
+        List<Boolean> readOnlys = new ArrayList<>();
+        DataSource replica = ignoringReadOnly(replicaDs, readOnlys);
+        ReplicaSet replicas = new ReplicaSet(LoadBalance.ROUND_ROBIN, replica);
+        BakiDao routed = BakiDao.of(ignoringReadOnly(ds, new ArrayList<>()));
+        routed.setReplicas(replicas);
+        Definition definition = Definition.defaultDefinition();
+        definition.setLevel(Level.SERIALIZABLE);
+        definition.setReadOnly(true);
+        // 只读事务中的查询都在事务开始时选择的同一个从库连接中执行，事务结束后释放
+        List<String> names = Tx.using(() -> {
+            List<String> list = new ArrayList<>();
+            list.add(name(routed));
+            assertEquals(1, replicas.getInFlight(replica));
+            assertEquals(1, replicaDs.getHikariPoolMXBean().getActiveConnections());
+            list.add(name(routed));
+            assertEquals(1, replicas.getInFlight(replica));
+            assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+            return list;
+        }, definition);
+        assertEquals(2, names.size());
+        assertEquals("replica", names.get(0));
+        assertEquals("replica", names.get(1));
+        assertTrue(readOnlys.contains(true));
+        assertEquals(0, replicas.getInFlight(replica));
+        assertEquals(0, replicaDs.getHikariPoolMXBean().getActiveConnections());
+        // 从库不可用时只读事务改为在主库执行
+        replicas.reportLag(replica, Long.MAX_VALUE);
+        assertEquals("primary", Tx.using(() -> name(routed), definition));
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+}
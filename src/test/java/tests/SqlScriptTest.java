@@ -0,0 +1,69 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.support.ScriptResult;
+import rabbit.sql.utils.SqlScriptReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SqlScriptTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void sqlScript() throws Exception {
+        SqlScriptReader reader = new SqlScriptReader(new StringReader("-- header;\n" +
+                "select 'a;b', \"c;d\" /* e;f */ from t;;\n" +
+                "create function f() returns text as $body$ select ';' $body$ language sql;\n" +
+                "/* only comment; */\n" +
+                "select 1 -- tail;\n"));
+        List<String> statements = new ArrayList<>();
+        reader.forEachRemaining(statements::add);
+        assertEquals(3, statements.size());
+        assertEquals("select 'a;b', \"c;d\" /* e;f */ from t", statements.get(0));
+        assertEquals("create function f() returns text as $body$ select ';' $body$ language sql", statements.get(1));
+        assertEquals("select 1 -- tail;", statements.get(2));
+
+        Path path = Files.createTempFile("script", ".sql");
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("-- seed data\ndrop table if exists script_test;\ncreate table script_test(id int, name text);\n");
+            for (int i = 0; i < 5000; i++) {
+                writer.write("insert into script_test values (" + i + ", 'name;" + i + "');\n");
+            }
+            writer.write("select count(*) from script_test;\nupdate script_test set name = 'x' where id < 10;\n");
+        }
+        ScriptResult result = baki.executeScript(path, 2000);
+        Files.delete(path);
+        assertEquals(5004, result.getStatements());
+        // SQLite对DDL语句返回上一句DML的更新数量
+        assertTrue(result.getAffectedRows() >= 5010);
+        assertEquals(3, result.getCommits());
+        assertEquals(5000, (int) baki.fetch("select count(*) c from script_test").get().getInt("c"));
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+}
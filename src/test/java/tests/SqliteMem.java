@@ -0,0 +1,95 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.BakiDao;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * sqlite临时文件数据库测试的公共方法
+ */
+final class SqliteMem {
+    private SqliteMem() {
+    }
+
+    /**
+     * 创建一个使用临时文件的sqlite数据源，使用完请关闭
+     */
+    static HikariDataSource dataSource() throws IOException {
+        File file = File.createTempFile("rabbit", ".db");
+        file.deleteOnExit();
+        HikariDataSource ds = new HikariDataSource();
+        ds.setDriverClassName("org.sqlite.JDBC");
+        ds.setJdbcUrl("jdbc:sqlite:" + file.getAbsolutePath());
+        return ds;
+    }
+
+    static void createUserTable(BakiDao baki) {
+        baki.execute("create table user(id int primary key, name varchar(50), age int)");
+    }
+
+    static List<Map<String, Object>> users(int from, int count) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            rows.add(Args.<Object>create().add("id", i).add("name", "user" + i).add("age", i % 100));
+        }
+        return rows;
+    }
+
+    /**
+     * 记录获取的连接，执行的声明对象，抓取行数和自动提交的设置（sqlite的声明对象不保存抓取行数）
+     */
+    static DataSource recording(DataSource dataSource, List<Connection> connections, List<PreparedStatement> statements, List<Integer> fetchSizes, List<Boolean> autoCommits) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class[]{DataSource.class}, (proxy, method, args) -> {
+            Object result = invoke(dataSource, method, args);
+            if (!method.getName().equals("getConnection")) {
+                return result;
+            }
+            Connection connection = (Connection) result;
+            connections.add(connection);
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (p, m, a) -> {
+                Object r = invoke(connection, m, a);
+                if (m.getName().equals("prepareStatement")) {
+                    PreparedStatement statement = (PreparedStatement) r;
+                    statements.add(statement);
+                    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class[]{PreparedStatement.class}, (sp, sm, sa) -> {
+                        if (sm.getName().equals("setFetchSize")) {
+                            fetchSizes.add((Integer) sa[0]);
+                        }
+                        return invoke(statement, sm, sa);
+                    });
+                } else if (m.getName().equals("setAutoCommit")) {
+                    autoCommits.add((Boolean) a[0]);
+                }
+                return r;
+            });
+        });
+    }
+
+    static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
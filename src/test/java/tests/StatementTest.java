@@ -0,0 +1,119 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.common.types.DataRow;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.dao.Condition;
+import rabbit.sql.dao.Filter;
+import rabbit.sql.support.QueryHandle;
+import rabbit.sql.transaction.Definition;
+import rabbit.sql.transaction.Level;
+import rabbit.sql.transaction.Tx;
+import rabbit.sql.types.DataFrame;
+
+import java.io.IOException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StatementTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void statementCache() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 100)));
+        Definition serializable = Definition.defaultDefinition();
+        serializable.setLevel(Level.SERIALIZABLE);
+        long hits = baki.getStatementCacheStats().getHitCount();
+        int count = Tx.using(() -> {
+            int sum = 0;
+            for (int i = 0; i < 10000; i++) {
+                sum += baki.update("user", Args.create().add("age", i), Condition.where(Filter.eq("id", i % 100)));
+            }
+            // 嵌套使用同一句sql
+            try (Stream<DataRow> outer = baki.query("select * from user where id < :id", Args.create().add("id", 10))) {
+                sum += outer.mapToInt(row -> {
+                    try (Stream<DataRow> inner = baki.query("select * from user where id < :id", Args.create().add("id", 10))) {
+                        return (int) inner.count();
+                    }
+                }).sum();
+            }
+            return sum;
+        }, serializable);
+        assertEquals(10000 + 100, count);
+        assertTrue(baki.getStatementCacheStats().getHitCount() - hits >= 9999);
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void timeoutAndCancel() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 10)));
+        assertEquals(10, (long) baki.withTimeout(5, () -> {
+            try (Stream<DataRow> s = baki.query("select * from user")) {
+                return s.count();
+            }
+        }));
+        try {
+            baki.withTimeout(1, () -> {
+                SqliteMem.sleep(1100);
+                return baki.fetch("select * from user");
+            });
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof SQLTimeoutException);
+        }
+
+        Definition definition = Definition.defaultDefinition();
+        definition.setLevel(Level.SERIALIZABLE);
+        definition.setTimeout(1);
+        Integer result = Tx.using(() -> {
+            baki.execute("delete from user where id = 0");
+            SqliteMem.sleep(1100);
+            return baki.execute("delete from user where id = 1", sc -> sc.executeUpdate());
+        }, definition);
+        assertNull(result);
+        try (Stream<DataRow> s = baki.query("select * from user")) {
+            assertEquals(10, s.count());
+        }
+
+        String sql = "with recursive seq(n) as (select 1 union all select n + 1 from seq where n < 100000000) select n from seq";
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (QueryHandle handle = baki.executeQueryHandle(sql, Args.create(), 1000)) {
+            scheduler.schedule(handle::cancel, 300, TimeUnit.MILLISECONDS);
+            handle.stream().count();
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("cancelled"));
+        } finally {
+            scheduler.shutdown();
+        }
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+}
@@ -0,0 +1,322 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rabbit.common.types.DataRow;
+import rabbit.sql.dao.Args;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.types.DataFrame;
+import rabbit.sql.types.Param;
+import rabbit.sql.utils.ColumnReaderPlan;
+import rabbit.sql.utils.JdbcUtil;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamQueryTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void streamCursor() throws Exception {
+        int total = 100000;
+        // sqlite的参数元数据将参数都视为字符串，上限直接写在sql里
+        String sql = "with recursive seq(n) as (select 1 union all select n + 1 from seq where n < " + total + ") " +
+                "select n as id, 'user' || n as name, n % 100 as age from seq";
+        List<Connection> connections = new ArrayList<>();
+        List<PreparedStatement> statements = new ArrayList<>();
+        List<Integer> fetchSizes = new ArrayList<>();
+        List<Boolean> autoCommits = new ArrayList<>();
+        BakiDao cursor = BakiDao.of(SqliteMem.recording(ds, connections, statements, fetchSizes, autoCommits));
+        try (Stream<DataRow> s = cursor.query(sql, Args.create(), 1000)) {
+            PreparedStatement statement = statements.get(statements.size() - 1);
+            assertEquals(Collections.singletonList(1000), fetchSizes);
+            assertEquals(ResultSet.TYPE_FORWARD_ONLY, statement.getResultSetType());
+            assertEquals(ResultSet.CONCUR_READ_ONLY, statement.getResultSetConcurrency());
+            assertFalse(connections.get(connections.size() - 1).getAutoCommit());
+            assertEquals(total, s.count());
+        }
+        // 关闭流时恢复自动提交
+        assertEquals(Arrays.asList(false, true), autoCommits);
+        // 不指定抓取行数时不切换自动提交
+        autoCommits.clear();
+        fetchSizes.clear();
+        try (Stream<DataRow> s = cursor.query(sql, Args.create(), 0)) {
+            assertEquals(total, s.count());
+        }
+        assertTrue(fetchSizes.isEmpty());
+        assertTrue(autoCommits.isEmpty());
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test(timeout = 10000)
+    public void streamLazily() throws Exception {
+        // 没有上限的序列，预先读取全部结果时测试不会结束
+        String sql = "with recursive seq(n) as (select 1 union all select n + 1 from seq) " +
+                "select n as id, 'user' || n as name from seq";
+        List<Boolean> autoCommits = new ArrayList<>();
+        BakiDao cursor = BakiDao.of(SqliteMem.recording(ds, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), autoCommits));
+        AtomicInteger read = new AtomicInteger();
+        try (Stream<DataRow> s = cursor.query(sql, Args.create(), 100)) {
+            Iterator<DataRow> rows = s.peek(row -> read.incrementAndGet()).iterator();
+            for (int i = 1; i <= 10; i++) {
+                assertEquals(i, rows.next().getInt("id").intValue());
+            }
+            // 只读取了消费的行
+            assertEquals(10, read.get());
+        }
+        // 提前关闭流时停止抓取并释放连接
+        assertEquals(Arrays.asList(false, true), autoCommits);
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void callWithoutCursor() throws Exception {
+        List<Boolean> autoCommits = new ArrayList<>();
+        BakiDao recorded = BakiDao.of(SqliteMem.recording(ds, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), autoCommits));
+        // sqlite不支持存储过程，调用失败前也不应该因为没有游标出参而切换自动提交
+        try {
+            recorded.call("{call test.nothing(:id)}", Args.of("id", Param.IN(1)), 1000);
+            fail();
+        } catch (RuntimeException ignore) {
+        }
+        assertTrue(autoCommits.isEmpty());
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void parallelQuery() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 10000)));
+        baki.insert(DataFrame.of("user", Collections.singletonList(Args.<Object>create().add("id", 10000).add("name", "nobody").add("age", null))));
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        try (Stream<DataRow> s = baki.queryParallel("select * from user;", Args.create(), "id", 8)) {
+            long sum = s.parallel()
+                    .peek(row -> threads.add(Thread.currentThread().getName()))
+                    .mapToLong(row -> row.getInt("id"))
+                    .sum();
+            assertEquals(10000L * 10001 / 2, sum);
+        }
+        assertFalse(threads.isEmpty());
+        // sql只解析一次，最值查询和分区查询不再重复解析
+        AtomicInteger prepared = new AtomicInteger();
+        BakiDao counting = new BakiDao(ds) {
+            @Override
+            protected String prepareSql(String sql, Map<String, Object> args) {
+                prepared.incrementAndGet();
+                return super.prepareSql(sql, args);
+            }
+        };
+        try (Stream<DataRow> s = counting.queryParallel("select * from user where id < :id", Args.create().add("id", 5000), "age", 16)) {
+            assertEquals(5000, s.parallel().count());
+        }
+        assertEquals(1, prepared.get());
+        try (Stream<DataRow> s = baki.queryParallel("select * from user where id = 10000", Args.create(), "age", 4)) {
+            assertEquals(1, s.parallel().count());
+        }
+    }
+
+    @Test
+    public void queryPublisher() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 1000)));
+        Publisher<DataRow> publisher = baki.queryPublisher("select * from user", Args.create());
+        int[] counts = new int[2];
+        boolean[] completed = new boolean[1];
+        Throwable[] errors = new Throwable[1];
+        publisher.subscribe(new Subscriber<DataRow>() {
+            Subscription subscription;
+            int buffered;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(7);
+            }
+
+            @Override
+            public void onNext(DataRow row) {
+                counts[0]++;
+                if (++buffered == 7) {
+                    buffered = 0;
+                    subscription.request(7);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors[0] = t;
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+        assertEquals(1000, counts[0]);
+        assertTrue(completed[0]);
+
+        publisher.subscribe(new Subscriber<DataRow>() {
+            Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(10);
+            }
+
+            @Override
+            public void onNext(DataRow row) {
+                if (++counts[1] == 25) {
+                    subscription.cancel();
+                } else if (counts[1] % 10 == 0) {
+                    subscription.request(10);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors[0] = t;
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertEquals(25, counts[1]);
+        assertNull(errors[0]);
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void multiResults() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 5)));
+        try (Stream<Stream<DataRow>> results = baki.executeMultiResults("select * from user where id < :id", Args.of("id", 3))) {
+            List<Long> counts = results.map(Stream::count).collect(Collectors.toList());
+            assertEquals(Collections.singletonList(3L), counts);
+        }
+        try (Stream<Stream<DataRow>> results = baki.executeMultiResults("delete from user where id >= 3", null)) {
+            List<DataRow> rows = results.flatMap(s -> s).collect(Collectors.toList());
+            assertEquals(1, rows.size());
+            assertEquals(2, (int) rows.get(0).getInt("result"));
+        }
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void columnReaderPlan() throws Exception {
+        int columns = 30, rows = 200;
+        StringBuilder ddl = new StringBuilder("create table wide(id int primary key");
+        StringBuilder insert = new StringBuilder("insert into wide(id");
+        StringBuilder values = new StringBuilder("values (:id");
+        String[] types = {" varchar(20)", " int", " real", " blob"};
+        for (int i = 0; i < columns; i++) {
+            ddl.append(", c").append(i).append(types[i % types.length]);
+            insert.append(", c").append(i);
+            values.append(", :c").append(i);
+        }
+        baki.execute("drop table if exists wide");
+        baki.execute(ddl.append(")").toString());
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            Args<Object> row = Args.create().add("id", r);
+            for (int i = 0; i < columns; i++) {
+                Object value;
+                if (r % 7 == i % 7) {
+                    value = null;
+                } else if (i % 4 == 0) {
+                    value = "v" + r;
+                } else if (i % 4 == 1) {
+                    value = r;
+                } else if (i % 4 == 2) {
+                    value = r + 0.5;
+                } else {
+                    value = ("b" + r).getBytes();
+                }
+                row.add("c" + i, value);
+            }
+            data.add(row);
+        }
+        baki.executeNonQuery(insert.append(") ").append(values).append(")").toString(), data);
+
+        List<DataRow> expected = new ArrayList<>();
+        List<DataRow> actual = new ArrayList<>();
+        try (Connection connection = ds.getConnection()) {
+            try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery("select * from wide order by id")) {
+                String[] names = null;
+                while (rs.next()) {
+                    if (names == null) {
+                        names = JdbcUtil.createNames(rs, "");
+                    }
+                    expected.add(JdbcUtil.createDataRow(names, rs));
+                }
+            }
+            try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery("select * from wide order by id")) {
+                ColumnReaderPlan plan = null;
+                while (rs.next()) {
+                    if (plan == null) {
+                        plan = ColumnReaderPlan.of(rs, "");
+                    }
+                    actual.add(plan.read(rs));
+                }
+            }
+        }
+        assertEquals(rows, actual.size());
+        for (int r = 0; r < rows; r++) {
+            DataRow e = expected.get(r);
+            DataRow a = actual.get(r);
+            assertEquals(e.getNames(), a.getNames());
+            assertEquals(e.getTypes(), a.getTypes());
+            for (int i = 0; i < e.size(); i++) {
+                Object ev = e.get(i);
+                Object av = a.get(i);
+                if (ev instanceof byte[]) {
+                    assertArrayEquals((byte[]) ev, (byte[]) av);
+                } else {
+                    assertEquals(ev, av);
+                }
+            }
+        }
+        baki.execute("drop table wide");
+    }
+}
@@ -0,0 +1,104 @@
+package tests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rabbit.common.types.DataRow;
+import rabbit.sql.dao.BakiDao;
+import rabbit.sql.types.DataFrame;
+import rabbit.sql.utils.SqlUtil;
+
+import java.io.IOException;
+import java.sql.SQLTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UpsertTest {
+
+    static HikariDataSource ds;
+    static BakiDao baki;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        ds = SqliteMem.dataSource();
+        baki = BakiDao.of(ds);
+        SqliteMem.createUserTable(baki);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ds.close();
+    }
+
+    @Test
+    public void upsert() throws Exception {
+        baki.execute("delete from user");
+        baki.insert(DataFrame.of("user", SqliteMem.users(0, 10)));
+        List<Map<String, Object>> rows = SqliteMem.users(5, 10);
+        rows.forEach(r -> r.put("name", "upsert"));
+        assertEquals(10, baki.upsert(DataFrame.of("user", rows), "id"));
+        try (Stream<DataRow> s = baki.query("select * from user where name = 'upsert'")) {
+            assertEquals(10, s.count());
+        }
+        rows = SqliteMem.users(10, 10);
+        rows.forEach(r -> r.put("name", "staging"));
+        assertEquals(10, baki.upsert(DataFrame.of("user", rows).staging(true), "id"));
+        try (Stream<DataRow> s = baki.query("select * from user")) {
+            assertEquals(20, s.count());
+        }
+        try (Stream<DataRow> s = baki.query("select * from user where name = 'staging'")) {
+            assertEquals(10, s.count());
+        }
+        // 冲突字段值重复的行以最后一行为准
+        rows = SqliteMem.users(18, 4);
+        rows.addAll(SqliteMem.users(18, 4));
+        rows.subList(4, 8).forEach(r -> r.put("name", "last"));
+        assertEquals(4, baki.upsert(DataFrame.of("user", rows).staging(true), "id"));
+        try (Stream<DataRow> s = baki.query("select * from user where id >= 18")) {
+            assertEquals(Arrays.asList("last", "last", "last", "last"), s.map(r -> r.getString("name")).collect(Collectors.toList()));
+        }
+        // 临时表合并同样受截止时间限制
+        List<Map<String, Object>> late = SqliteMem.users(30, 2);
+        try {
+            baki.withTimeout(1, () -> {
+                SqliteMem.sleep(1100);
+                return baki.upsert(DataFrame.of("user", late).staging(true), "id");
+            });
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof SQLTimeoutException);
+        }
+        try (Stream<DataRow> s = baki.query("select * from user where id >= 30")) {
+            assertEquals(0, s.count());
+        }
+        assertEquals(0, ds.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    public void upsertSql() throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1);
+        row.put("name", "a");
+        List<String> keys = Collections.singletonList("id");
+        assertEquals("merge into test.user t0 \nusing (select :id id, :name name from dual) s \non (t0.id = s.id) " +
+                        "\nwhen matched then update set t0.name = s.name \nwhen not matched then insert (id, name) values (s.id, s.name)",
+                SqlUtil.generateUpsert("oracle", "test.user", new LinkedHashMap<>(row), null, null, keys));
+        assertEquals("merge into test.user as t0 \nusing (select :id as id, :name as name) as s \non (t0.id = s.id) " +
+                        "\nwhen matched then update set t0.name = s.name \nwhen not matched then insert (id, name) values (s.id, s.name);",
+                SqlUtil.generateUpsert("microsoft sql server", "test.user", new LinkedHashMap<>(row), null, null, keys));
+        assertEquals("insert into test.user(id, name) \nvalues (:id, :name) \non duplicate key update name = values(name)",
+                SqlUtil.generateUpsert("mysql", "test.user", new LinkedHashMap<>(row), null, null, keys));
+        assertEquals("insert into test.user(id, name) \nvalues (:id, :name) \non conflict (id) do update set name = excluded.name",
+                SqlUtil.generateUpsert("postgresql", "test.user", new LinkedHashMap<>(row), null, null, keys));
+    }
+}